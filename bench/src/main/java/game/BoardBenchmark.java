@@ -0,0 +1,77 @@
+package game;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Collision and placement against a mid-game stack
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class BoardBenchmark {
+    private Board board;
+    private Engine engine;
+    private Tetrinome free;    // Piece in open space above the stack
+    private Tetrinome blocked; // Piece overlapping the stack
+    private Tetrinome landing; // Piece resting on the stack, placed by placeTetrinome
+
+    @Setup
+    public void setUp() {
+        board = new Board(10, 20, 30, 800, 600, null);
+        engine = board.getEngine();
+        Positions.load(engine, Positions.STACK);
+        free = new Tetrinome(TetrinomeType.T, 4, 8, board);
+        blocked = new Tetrinome(TetrinomeType.L, 6, 17, board);
+        landing = new Tetrinome(TetrinomeType.T, 4, 13, board);
+    }
+
+    @Benchmark
+    public boolean isCollisionFree() {
+        return board.isCollision(free);
+    }
+
+    @Benchmark
+    public boolean isCollisionBlocked() {
+        return board.isCollision(blocked);
+    }
+
+    // Skyline lookup, O(piece width) however far the piece falls
+    @Benchmark
+    public int dropDistance() {
+        return board.dropDistance(free);
+    }
+
+    // The row-at-a-time scan dropDistance replaces
+    @Benchmark
+    public int dropDistanceScan() {
+        int distance = 0;
+        while (!board.isCollision(TetrinomeType.T, free.getRotationIndex(), free.getCol(), free.getRow() + distance + 1)) {
+            distance++;
+        }
+        return distance;
+    }
+
+    // Includes restoring the stack afterwards, compare against reloadStack
+    @Benchmark
+    public void placeTetrinome() {
+        board.placeTetrinome(landing);
+        Positions.load(engine, Positions.STACK);
+    }
+
+    @Benchmark
+    public void reloadStack() {
+        Positions.load(engine, Positions.STACK);
+    }
+}
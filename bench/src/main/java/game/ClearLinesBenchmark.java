@@ -0,0 +1,56 @@
+package game;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Line clears on a stack with 0 to 4 complete rows interleaved with partial ones
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class ClearLinesBenchmark {
+    private static final long FULL_ROW = 0b1111111111L;
+
+    @Param({"0", "1", "2", "3", "4"})
+    public int fullRows;
+
+    private Board board;
+    private Engine engine;
+    private long[] stack;
+
+    @Setup
+    public void setUp() {
+        board = new Board(10, 20, 30, 800, 600, null);
+        engine = board.getEngine();
+        stack = new long[Positions.STACK.length + fullRows];
+        for (int i = 0, partial = 0; i < stack.length; i++) {
+            // Complete rows on every other row from the bottom, partial stack rows in between
+            stack[i] = i % 2 == 0 && i / 2 < fullRows ? FULL_ROW : Positions.STACK[partial++];
+        }
+    }
+
+    // Includes reloading the stack, compare against reloadStack
+    @Benchmark
+    public void clearLines() {
+        Positions.load(engine, stack);
+        board.clearLines();
+    }
+
+    @Benchmark
+    public void reloadStack() {
+        Positions.load(engine, stack);
+    }
+}
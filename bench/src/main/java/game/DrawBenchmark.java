@@ -0,0 +1,62 @@
+package game;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// A full frame of Board.draw plus the active piece into an offscreen 800x600 image
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class DrawBenchmark {
+    // Rows marked changed before each frame: none, a line clear's worth, or the whole board
+    @Param({"0", "4", "20"})
+    public int dirtyRows;
+
+    private Board board;
+    private Engine engine;
+    private Tetrinome piece;
+    private BufferedImage image;
+    private Graphics brush;
+
+    @Setup
+    public void setUp() {
+        board = new Board(10, 20, 30, 800, 600, null);
+        engine = board.getEngine();
+        Positions.load(engine, Positions.STACK);
+        piece = new Tetrinome(TetrinomeType.T, 4, 8, board);
+        image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        brush = image.getGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        brush.dispose();
+    }
+
+    @Benchmark
+    public void draw() {
+        int height = engine.getHeight();
+        for (int row = height - dirtyRows; row < height; row++) {
+            engine.setRowBits(row, engine.getRowBits(row));
+        }
+        board.draw(brush);
+        piece.paint(brush);
+    }
+}
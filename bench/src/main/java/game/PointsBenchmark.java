@@ -0,0 +1,74 @@
+package game;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Vertex transforms of a Tetrinome and of a plain Polygon, and hit-testing against a Polygon
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class PointsBenchmark {
+    private Tetrinome tetrinome;
+    private Polygon polygon;
+    private final Point[] queries = new Point[256];
+    private final boolean[] results = new boolean[256];
+
+    @Setup
+    public void setUp() {
+        Board board = new Board(10, 20, 30, 800, 600, null);
+        tetrinome = new Tetrinome(TetrinomeType.L, 4, 10, board);
+        tetrinome.turn(1);
+        Point[] shape = {new Point(0, 0), new Point(30, 0), new Point(30, 30), new Point(0, 30)};
+        polygon = new Polygon(shape, new Point(400, 300), 45);
+        Random random = new Random(1);
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = new Point(380 + random.nextInt(40), 280 + random.nextInt(40));
+        }
+    }
+
+    @Benchmark
+    public Point[] tetrinomeGetPoints() {
+        return tetrinome.getPoints();
+    }
+
+    @Benchmark
+    public Point[] polygonGetPoints() {
+        return polygon.getPoints();
+    }
+
+    // One point per call, as hit-testing did before batching
+    @Benchmark
+    public int polygonContains() {
+        int inside = 0;
+        for (Point query : queries) {
+            if (polygon.contains(query)) inside++;
+        }
+        return inside;
+    }
+
+    @Benchmark
+    public int polygonContainsBatch() {
+        return polygon.contains(queries, results);
+    }
+
+    // A moving polygon pays for one transform per frame, not one per query
+    @Benchmark
+    public int polygonRotateAndContainsBatch() {
+        polygon.rotate(1);
+        return polygon.contains(queries, results);
+    }
+}
@@ -0,0 +1,25 @@
+package game;
+
+// Board positions shared by the benchmarks
+final class Positions {
+    // A mid-game 10x20 stack with holes and no complete rows, listed from the bottom row up
+    static final long[] STACK = {
+        0b1111101111L,
+        0b1110111111L,
+        0b0111111110L,
+        0b1111011100L,
+        0b0011111000L,
+        0b0001110000L,
+    };
+
+    private Positions() {}
+
+    // Clears the engine grid and loads the stack onto its bottom rows
+    static void load(Engine engine, long[] stack) {
+        int height = engine.getHeight();
+        for (int row = 0; row < height; row++) {
+            int fromBottom = height - 1 - row;
+            engine.setRowBits(row, fromBottom < stack.length ? stack[fromBottom] : 0);
+        }
+    }
+}
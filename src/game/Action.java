@@ -0,0 +1,6 @@
+package game;
+
+// Inputs understood by the Engine, one per step
+public enum Action {
+    LEFT, RIGHT, DOWN, ROTATE, HARD_DROP
+}
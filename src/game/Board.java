@@ -2,28 +2,40 @@ package game;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.io.IOException;
+import java.nio.file.Path;
 
+// Draws an Engine and feeds it key presses; the game rules live in Engine
 public class Board {
-    private int[][] grid; // 2D array to store the state of the grid
-    private int width;    // Width of the board in cells
-    private int height;   // Height of the board in cells
-    private int cellSize; // Size of each cell in pixels
-    private int offsetX;  // Horizontal offset to center the board
-    private int offsetY;  // Vertical offset to center the board
+    private Engine engine; // Headless game state and rules
+    private int width;     // Width of the board in cells
+    private int height;    // Height of the board in cells
+    private int cellSize;  // Size of each cell in pixels
+    private int offsetX;   // Horizontal offset to center the board
+    private int offsetY;   // Vertical offset to center the board
     private TetrinomeController controller; // Tetrinome controller
-    private Tetris tetris; // Reference to Tetris for GameOver access
+    private Tetris tetris; // Window the board is drawn in, null when headless
+    private BufferedImage gridImage; // Static grid lines, drawn once
+    private Image cellsImage;        // Grid plus placed cells, only dirty rows are redrawn
+    private Graphics cellsGraphics;  // Kept for the life of cellsImage so redraws do not allocate one
 
     // Constructor
     public Board(int width, int height, int cellSize, int gameWidth, int gameHeight, Tetris tetris) {
-        this.width = width;
-        this.height = height;
+        this(new Engine(width, height), cellSize, gameWidth, gameHeight, tetris);
+    }
+
+    // Constructor for an existing engine
+    public Board(Engine engine, int cellSize, int gameWidth, int gameHeight, Tetris tetris) {
+        this.engine = engine;
+        this.width = engine.getWidth();
+        this.height = engine.getHeight();
         this.cellSize = cellSize;
-        this.grid = new int[height][width]; // Initialize the grid
 
         // Calculate offsets to center the board
         this.offsetX = (gameWidth - width * cellSize) / 2;
@@ -32,168 +44,240 @@ public class Board {
         this.controller = new TetrinomeController(); // Initialize the controller
     }
 
-    // Draws the grid and occupied cells
+    // Draws the grid and occupied cells from the cached image, redrawing only the rows that changed
     public void draw(Graphics brush) {
-        // Draw grid lines
-        brush.setColor(Color.DARK_GRAY);
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                int x = offsetX + col * cellSize;
-                int y = offsetY + row * cellSize;
-                brush.drawRect(x, y, cellSize, cellSize);
+        if (cellsImage == null) {
+            createImages();
+        }
+
+        if (cellsImage instanceof VolatileImage) {
+            VolatileImage image = (VolatileImage) cellsImage;
+            int status = image.validate(tetris.getGraphicsConfiguration());
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                image.flush();
+                createImages();
+            } else if (status == VolatileImage.IMAGE_RESTORED) {
+                redrawRows(0, height - 1);
             }
         }
 
-        // Draw occupied cells
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                if (grid[row][col] != 0) {
-                    int x = offsetX + col * cellSize;
-                    int y = offsetY + row * cellSize;
-                    brush.setColor(Color.WHITE);
-                    brush.fillRect(x, y, cellSize, cellSize);
+        redrawRows(engine.getDirtyTop(), engine.getDirtyBottom());
+        engine.markClean();
+        brush.drawImage(cellsImage, offsetX, offsetY, null);
+
+        // Contents lost while drawing are repainted in full next frame
+        if (cellsImage instanceof VolatileImage && ((VolatileImage) cellsImage).contentsLost()) {
+            cellsImage = null;
+        }
+    }
+
+    // Renders the grid lines once and allocates the cell layer, accelerated when on screen
+    private void createImages() {
+        int w = width * cellSize + 1;
+        int h = height * cellSize + 1;
+        if (gridImage == null) {
+            gridImage = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics g = gridImage.getGraphics();
+            g.setColor(Color.DARK_GRAY);
+            for (int row = 0; row < height; row++) {
+                for (int col = 0; col < width; col++) {
+                    g.drawRect(col * cellSize, row * cellSize, cellSize, cellSize);
                 }
             }
+            g.dispose();
         }
+
+        GraphicsConfiguration config = tetris != null ? tetris.getGraphicsConfiguration() : null;
+        if (cellsGraphics != null) {
+            cellsGraphics.dispose();
+        }
+        cellsImage = config != null ? config.createCompatibleVolatileImage(w, h)
+                : new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        cellsGraphics = cellsImage.getGraphics();
+        redrawRows(0, height - 1);
     }
 
-    public boolean isCollision(Tetrinome t) {
-        Point[] points = t.getPoints(); // Get the Tetrinome's current points
-        for (Point point : points) {
-            int col = (int) Math.floor((point.x - offsetX) / cellSize); // Map to grid column
-            int row = (int) Math.floor((point.y - offsetY) / cellSize); // Map to grid row
-
-            // Check for out-of-bounds collision
-            if (col < 0 || col >= width || row < 0 || row >= height) {
-                return true; // Collision detected
-            }
+    // Copies the grid back over a range of rows and fills their occupied cells
+    private void redrawRows(int top, int bottom) {
+        if (top > bottom) return;
 
-            // Check for collision with occupied cells
-            if (grid[row][col] != 0) {
-                return true; // Collision detected
+        Graphics g = cellsGraphics;
+        int y1 = top * cellSize;
+        int y2 = bottom == height - 1 ? height * cellSize + 1 : (bottom + 1) * cellSize;
+        int w = width * cellSize + 1;
+        g.drawImage(gridImage, 0, y1, w, y2, 0, y1, w, y2, null);
+
+        g.setColor(Color.WHITE);
+        for (int row = top; row <= bottom; row++) {
+            long bits = engine.getRowBits(row);
+            while (bits != 0) {
+                int col = Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1; // Clear the lowest set bit
+                g.fillRect(col * cellSize, row * cellSize, cellSize, cellSize);
             }
         }
-        return false; // No collision detected
+    }
+
+    // Rows a piece can fall before it lands, from the engine's column skyline
+    public int dropDistance(Tetrinome t) {
+        return engine.dropDistance(t.getType(), t.getRotationIndex(), t.getCol(), t.getRow());
+    }
+
+    // Height of the stack in a column, in cells
+    public int getColumnHeight(int col) {
+        return engine.getColumnHeight(col);
+    }
+
+    // Saves the board, the active piece and the bag so load can continue the game exactly
+    public void save(Path path) throws IOException {
+        Snapshot.save(engine, path);
+    }
+
+    // Replaces the game with one saved by save, the file must hold a board of the same size
+    public void load(Path path) throws IOException {
+        Snapshot.load(path, engine);
+        controller.piecesSeen = -1; // Rebuild the active Tetrinome from the loaded piece
+        controller.syncActiveTetrinome();
+    }
+
+    public boolean isCollision(Tetrinome t) {
+        return isCollision(t.getType(), t.getRotationIndex(), t.getCol(), t.getRow());
+    }
+
+    public boolean isCollision(TetrinomeType type, int rotation, int col, int row) {
+        return !engine.fits(type, rotation, col, row);
     }
 
     // Places the Tetrinome on the grid
     public void placeTetrinome(Tetrinome t) {
-        Point[] points = t.getPoints();
-        for (Point point : points) {
-            int col = (int) Math.floor((point.x - offsetX) / cellSize);
-            int row = (int) Math.floor((point.y - offsetY) / cellSize);
-
-            // Mark the grid cell as occupied
-            if (row >= 0 && row < height && col >= 0 && col < width) {
-                grid[row][col] = 1;
-            }
-        }
+        engine.place(t.getType(), t.getRotationIndex(), t.getCol(), t.getRow());
         t.setPlaced(true); // Marks the Tetrinome as placed
         clearLines(); // Checks for and clear completed lines
     }
 
-    // Clears completed lines from the grid
-    public void clearLines() {
-        for (int row = 0; row < height; row++) {
-            boolean isComplete = true;
-            for (int col = 0; col < width; col++) {
-                if (grid[row][col] == 0) {
-                    isComplete = false;
-                    break;
-                }
-            }
+    // Clears completed lines from the grid, returns the number cleared
+    public int clearLines() {
+        return engine.clearLines();
+    }
 
-            if (isComplete) {
-                // Shifts all rows above down by one
-                for (int r = row; r > 0; r--) {
-                    System.arraycopy(grid[r - 1], 0, grid[r], 0, width);
-                }
-                // Clears the top row
-                for (int col = 0; col < width; col++) {
-                    grid[0][col] = 0;
-                }
-            }
-        }
+    // Maps canvas pixels to grid cells and back
+    public int toCol(double x) {
+        return (int) Math.floor((x - offsetX) / cellSize);
+    }
+
+    public int toRow(double y) {
+        return (int) Math.floor((y - offsetY) / cellSize);
+    }
+
+    public int toX(int col) {
+        return offsetX + col * cellSize;
+    }
+
+    public int toY(int row) {
+        return offsetY + row * cellSize;
     }
 
-    // Inner class for managing Tetrinomes and handling key events
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    // Checks whether the cell at (row, col) is occupied
+    public boolean isOccupied(int row, int col) {
+        return engine.isOccupied(row, col);
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    // Inner class that turns key events into engine actions and mirrors the active piece.
+    // Key events only enqueue; the queue is drained and all game state changes on the loop thread.
     public class TetrinomeController implements KeyListener {
-        private List<Tetrinome> tetrinomeBag;
         private Tetrinome activeTetrinome;
+        private int piecesSeen = -1; // Engine piece count the active Tetrinome was created for
+        private ReplayRecorder recorder; // Logs every applied action when set
+        private final InputQueue inputs = new InputQueue(256);
+        private final InputHandler inputHandler = new InputHandler(inputs, this::apply);
+        private final Tetrinome[] pieces = new Tetrinome[TetrinomeType.values().length]; // One reused piece per type
 
         public TetrinomeController() {
-            this.tetrinomeBag = new ArrayList<>();
-            refillBag(); // Fill the bag
-            spawnNextTetrinome();
+            syncActiveTetrinome();
         }
 
-        private void refillBag() {
-            tetrinomeBag.clear();
-            for (TetrinomeType type : TetrinomeType.values()) {
-                tetrinomeBag.add(new Tetrinome(type, new Point(4 * cellSize, 0), Board.this));
-            }
-            Collections.shuffle(tetrinomeBag); // Shuffle the bag
+        // Applies an action to the engine, used by the input handler and by non-keyboard players.
+        // Returns true if the piece moved.
+        public boolean apply(Action action) {
+            if (engine.isGameOver()) return false;
+            if (recorder != null) recorder.record(action);
+            boolean moved = engine.step(action);
+            syncActiveTetrinome();
+            return moved;
         }
 
-        private void spawnNextTetrinome() {
-            if (tetrinomeBag.isEmpty()) {
-                refillBag(); // Refresh the Tetrinome bag if empty
-            }
-            Tetrinome nextTetrinome = tetrinomeBag.remove(0); // Get the next piece
+        public void setRecorder(ReplayRecorder recorder) {
+            this.recorder = recorder;
+        }
 
-            // Check if Game Over condition is met
-            if (tetris.getGameOver().isActive() || isCollision(nextTetrinome)) { 
-                // Trigger Game Over in Tetris
-                tetris.getGameOver().trigger();
-                return; // Stop spawning the piece
-            }
+        // Lets a bot make the next input
+        public void play(Bot bot) {
+            if (engine.isGameOver()) return;
+            apply(bot.nextAction(engine));
+        }
 
-            activeTetrinome = nextTetrinome; // Activate the piece if no collision
-            activeTetrinome.setPlaced(false); // Ensure it is not marked as placed
+        // Handles queued input, then advances gravity and lock delay by one logic tick
+        public void tick() {
+            inputHandler.update();
+            if (engine.isGameOver()) return;
+            engine.tick();
+            syncActiveTetrinome();
         }
 
-        @Override
-        public void keyPressed(KeyEvent e) {
-            if (activeTetrinome == null || activeTetrinome.isPlaced() || tetris.getGameOver().isActive()) return;
+        // Updates the active Tetrinome from the engine, replacing it when a new piece spawned
+        private void syncActiveTetrinome() {
+            if (piecesSeen != engine.getPiecesPlaced()) {
+                piecesSeen = engine.getPiecesPlaced();
+                if (activeTetrinome != null) {
+                    activeTetrinome.setPlaced(true);
+                }
+                activeTetrinome = null;
+                TetrinomeType type = engine.getPieceType();
+                if (type != null) {
+                    if (pieces[type.ordinal()] == null) {
+                        pieces[type.ordinal()] = new Tetrinome(type, engine.getPieceCol(), engine.getPieceRow(), Board.this);
+                    }
+                    activeTetrinome = pieces[type.ordinal()];
+                    activeTetrinome.setPlaced(false);
+                }
+            }
 
+            if (engine.isGameOver()) return;
+            activeTetrinome.setGridPosition(engine.getPieceCol(), engine.getPieceRow());
+            activeTetrinome.setRotationIndex(engine.getPieceRotation());
+        }
+
+        // Maps the arrow keys and space to actions, null for other keys
+        private Action toAction(KeyEvent e) {
             switch (e.getKeyCode()) {
-                case KeyEvent.VK_LEFT:
-                    activeTetrinome.move(t -> {
-                        t.position.x -= cellSize;
-                        if (isCollision(t)) t.position.x += cellSize; // Undo move if collision occurs
-                    });
-                    break;
-                case KeyEvent.VK_RIGHT:
-                    activeTetrinome.move(t -> {
-                        t.position.x += cellSize;
-                        if (isCollision(t)) t.position.x -= cellSize; // Undo move if collision occurs
-                    });
-                    break;
-                case KeyEvent.VK_DOWN:
-                    activeTetrinome.move(t -> {
-                        t.position.y += cellSize;
-                        if (isCollision(t)) {
-                            t.position.y -= cellSize; // Undo move if collision occurs
-                            placeTetrinome(t); // Place the Tetrinome if it hits the bottom
-                        }
-                    });
-                    break;
-                case KeyEvent.VK_UP:
-                    activeTetrinome.move(t -> {
-                        t.rotation += 90;
-                        if (isCollision(t)) t.rotation -= 90; // Undo rotation if collision occurs
-                    });
-                    break;
+                case KeyEvent.VK_LEFT: return Action.LEFT;
+                case KeyEvent.VK_RIGHT: return Action.RIGHT;
+                case KeyEvent.VK_DOWN: return Action.DOWN;
+                case KeyEvent.VK_UP: return Action.ROTATE;
+                case KeyEvent.VK_SPACE: return Action.HARD_DROP;
+                default: return null;
             }
+        }
 
-            if (activeTetrinome.isPlaced()) {
-                placeTetrinome(activeTetrinome);
-                spawnNextTetrinome();
-            }
+        @Override
+        public void keyPressed(KeyEvent e) {
+            Action action = toAction(e);
+            if (action != null) inputs.offer(InputHandler.press(action), System.nanoTime());
         }
 
         @Override
-        public void keyReleased(KeyEvent e) {}
+        public void keyReleased(KeyEvent e) {
+            Action action = toAction(e);
+            if (action != null) inputs.offer(InputHandler.release(action), System.nanoTime());
+        }
 
         @Override
         public void keyTyped(KeyEvent e) {}
@@ -201,6 +285,10 @@ public class Board {
         public Tetrinome getActiveTetrinome() {
             return activeTetrinome;
         }
+
+        public InputHandler getInputHandler() {
+            return inputHandler;
+        }
     }
 
     public TetrinomeController getController() {
@@ -0,0 +1,233 @@
+package game;
+
+// Bounded undo history of an Engine game. Each snapshot holds the grid as pages of blocks of
+// rows shared copy-on-write with the snapshot before it. The engine's grid tracks the rows
+// changed since the history last saw it, so recording looks only at those rows and copies
+// the blocks and pages holding them: a placement that clears nothing costs one or two blocks
+// and a page however tall the board is, plus a pointer per 64 rows. Undo, redo and jumps
+// rewrite only the rows that differ, found by comparing the two snapshots' pointers.
+// Recording after going back drops the snapshots ahead of it. Snapshots also hold the
+// active piece and the counters, and the engine's queue keeps enough taken pieces that a
+// rewound game is dealt the same pieces again.
+public class BoardHistory {
+    private static final int BLOCK_ROWS = 4;   // Grid rows per shared block
+    private static final int PAGE_BLOCKS = 16; // Blocks per shared page
+    private static final int PAGE_ROWS = BLOCK_ROWS * PAGE_BLOCKS;
+
+    private final int capacity;
+    private final long[][][][] grids; // Pages of blocks of each snapshot's grid, top first
+    private final TetrinomeType[] types; // Active piece of each snapshot, null once the game is over
+    private final int[] rotations;
+    private final int[] cols;
+    private final int[] rows;
+    private final int[] pieces;
+    private final int[] lines;
+    private final long[] taken; // Pieces taken from the queue
+    private int oldest; // Slot of the oldest snapshot
+    private int size;
+    private int cursor; // Snapshot the game is at, counted from the oldest
+    private int width;
+    private int height;
+    private long[] grid = new long[0]; // Rows of the snapshot being restored
+    private Engine synced;  // Engine whose grid is the cursor's snapshot but for its changed rows
+    private long syncMark;  // Its change mark then, any other mark leaves the changed rows unknown
+
+    public BoardHistory(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.grids = new long[capacity][][][];
+        this.types = new TetrinomeType[capacity];
+        this.rotations = new int[capacity];
+        this.cols = new int[capacity];
+        this.rows = new int[capacity];
+        this.pieces = new int[capacity];
+        this.lines = new int[capacity];
+        this.taken = new long[capacity];
+    }
+
+    // Records the engine's game as the newest snapshot, after the one the game is at. The
+    // oldest snapshot is dropped once the history is full.
+    public void record(Engine engine) {
+        if (size == 0) {
+            width = engine.getWidth();
+            height = engine.getHeight();
+        } else if (engine.getWidth() != width || engine.getHeight() != height) {
+            throw new IllegalArgumentException("History is of a " + width + "x" + height + " board, not "
+                    + engine.getWidth() + "x" + engine.getHeight());
+        }
+        // Recorded once per placement, the kept snapshots span capacity pieces plus the active one
+        engine.getQueue().retain(capacity + 1);
+
+        long[][][] previous = size == 0 ? null : grids[slot(cursor)];
+        int top = 0;
+        int bottom = height - 1;
+        if (previous != null && isSynced(engine)) {
+            top = engine.getChangedTop();
+            bottom = engine.getChangedBottom();
+        }
+        for (int index = cursor + 1; index < size; index++) {
+            grids[slot(index)] = null; // Snapshots undone and now replaced
+        }
+        size = size == 0 ? 0 : cursor + 1;
+        if (size == capacity) {
+            grids[oldest] = null;
+            oldest = (oldest + 1) % capacity;
+            size--;
+        }
+
+        int slot = slot(size);
+        grids[slot] = share(previous, engine, top, bottom);
+        types[slot] = engine.getPieceType();
+        rotations[slot] = engine.getPieceRotation();
+        cols[slot] = engine.getPieceCol();
+        rows[slot] = engine.getPieceRow();
+        pieces[slot] = engine.getPiecesPlaced();
+        lines[slot] = engine.getLinesCleared();
+        taken[slot] = engine.getQueue().getTaken();
+        cursor = size++;
+        sync(engine);
+    }
+
+    // Pages of the engine's grid, rows top through bottom read again and the others shared
+    // with the previous snapshot. Blocks that still match are shared too, and the previous
+    // snapshot's whole page table when nothing changed.
+    private long[][][] share(long[][][] previous, Engine engine, int top, int bottom) {
+        long[][][] pages = null;
+        for (int b = top / BLOCK_ROWS; b <= bottom / BLOCK_ROWS; b++) {
+            int first = b * BLOCK_ROWS;
+            int p = b / PAGE_BLOCKS;
+            long[] block = previous == null ? null : previous[p][b % PAGE_BLOCKS];
+            if (block != null && matches(block, engine, first)) continue;
+
+            block = new long[Math.min(BLOCK_ROWS, height - first)];
+            for (int i = 0; i < block.length; i++) {
+                block[i] = engine.getRowBits(first + i);
+            }
+            if (pages == null) {
+                pages = previous == null ? new long[(height + PAGE_ROWS - 1) / PAGE_ROWS][][] : previous.clone();
+            }
+            if (pages[p] == null) {
+                pages[p] = new long[PAGE_BLOCKS][];
+            } else if (previous != null && pages[p] == previous[p]) {
+                pages[p] = previous[p].clone();
+            }
+            pages[p][b % PAGE_BLOCKS] = block;
+        }
+        return pages == null ? previous : pages;
+    }
+
+    private static boolean matches(long[] block, Engine engine, int top) {
+        for (int i = 0; i < block.length; i++) {
+            if (block[i] != engine.getRowBits(top + i)) return false;
+        }
+        return true;
+    }
+
+    // Goes back one snapshot. Returns false if the game is at the oldest one.
+    public boolean undo(Engine engine) {
+        if (cursor == 0) return false;
+        jumpTo(cursor - 1, engine);
+        return true;
+    }
+
+    // Goes forward one snapshot after an undo. Returns false if the game is at the newest one.
+    public boolean redo(Engine engine) {
+        if (cursor >= size - 1) return false;
+        jumpTo(cursor + 1, engine);
+        return true;
+    }
+
+    // Puts the engine's game back to a snapshot, 0 being the oldest kept. The engine is the
+    // one the history was recorded from, or one with the same size and piece queue, whose
+    // whole grid is then rewritten.
+    public void jumpTo(int index, Engine engine) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Snapshot out of range: " + index + " of " + size);
+        }
+        int slot = slot(index);
+        long[][][] target = grids[slot];
+        int top = 0;
+        int bottom = height - 1;
+        if (isSynced(engine)) {
+            // The rows the engine changed since the cursor's snapshot, and the blocks that
+            // snapshot does not share with the target
+            top = engine.getChangedTop();
+            bottom = engine.getChangedBottom();
+            long[][][] current = grids[slot(cursor)];
+            for (int p = 0; p < target.length; p++) {
+                if (target[p] == current[p]) continue;
+                for (int b = 0; b < PAGE_BLOCKS; b++) {
+                    if (target[p][b] == current[p][b]) continue;
+                    int first = p * PAGE_ROWS + b * BLOCK_ROWS;
+                    top = Math.min(top, first);
+                    bottom = Math.max(bottom, first + target[p][b].length - 1);
+                }
+            }
+        }
+
+        if (grid.length < height) {
+            grid = new long[height];
+        }
+        for (int row = top; row <= bottom; row++) {
+            grid[row] = rowBits(target, row);
+        }
+        if (top <= bottom) engine.restoreRows(grid, top, bottom);
+        engine.restorePiece(types[slot], rotations[slot], cols[slot], rows[slot], pieces[slot], lines[slot]);
+        engine.getQueue().seek(taken[slot]);
+        cursor = index;
+        sync(engine);
+    }
+
+    // True when the engine is the one the history last recorded or restored, its changed
+    // rows then being the only ones that can differ from the cursor's snapshot
+    private boolean isSynced(Engine engine) {
+        return engine == synced && engine.getChangeMark() == syncMark;
+    }
+
+    private void sync(Engine engine) {
+        synced = engine;
+        syncMark = engine.takeChanges();
+    }
+
+    // Snapshots kept, the newest at size() - 1
+    public int size() {
+        return size;
+    }
+
+    // Snapshot the game is at
+    public int getCursor() {
+        return cursor;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getPiecesPlaced(int index) {
+        return pieces[slot(checked(index))];
+    }
+
+    public int getLinesCleared(int index) {
+        return lines[slot(checked(index))];
+    }
+
+    // Reads a snapshot's grid without restoring it, bit col set when the cell is occupied
+    public long getRowBits(int index, int row) {
+        return rowBits(grids[slot(checked(index))], row);
+    }
+
+    private static long rowBits(long[][][] pages, int row) {
+        return pages[row / PAGE_ROWS][row / BLOCK_ROWS % PAGE_BLOCKS][row % BLOCK_ROWS];
+    }
+
+    private int checked(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Snapshot out of range: " + index + " of " + size);
+        }
+        return index;
+    }
+
+    private int slot(int index) {
+        return (oldest + index) % capacity;
+    }
+}
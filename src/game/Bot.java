@@ -0,0 +1,422 @@
+package game;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Plays by trying every placement of the active piece and every rotation and column of the
+// preview pieces and scoring the resulting boards with a weighted heuristic. The active
+// piece's placements come from a MoveGenerator, tucks and spins included, and the bot
+// follows the generator's input sequence to the best one. The placements are split across
+// a ForkJoinPool; each worker reuses its own scratch boards.
+// A Bot plans for one game at a time and is not safe to share between games.
+public class Bot {
+    // Feature indices into the weights array
+    public static final int AGGREGATE_HEIGHT = 0;
+    public static final int HOLES = 1;
+    public static final int BUMPINESS = 2;
+    public static final int LINES = 3;
+    public static final int FEATURES = 4;
+
+    public static final double[] DEFAULT_WEIGHTS = {-0.510066, -0.35663, -0.184483, 0.760666};
+
+    private static final double NO_MOVE = -1e9; // Score of a board the next piece cannot enter
+
+    // Rotations that give distinct shapes for each type, indexed by TetrinomeType ordinal
+    private static final int[][] DISTINCT_ROTATIONS = buildDistinctRotations();
+
+    private final double[] weights;
+    private final int lookahead;     // Pieces searched: the active piece plus lookahead - 1 previews
+    private final long budgetNanos;  // Time allowed for each decision
+    private final ForkJoinPool pool; // Pool for the search, null to search on the calling thread
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+    private final EvalCache cache;   // Board evaluations by Zobrist hash, null to always evaluate
+
+    // Search inputs, written before the search is started and read by the workers
+    private TetrinomeType[] pieces;
+    private long[] root;
+    private long rootHash;
+    private int width;
+    private long fullRow;
+    private long deadline;
+
+    // Placements of the active piece and their scores, NaN when the search ran out of time
+    private final MoveGenerator moves = new MoveGenerator();
+    private int[] rotations = new int[0];
+    private int[] cols = new int[0];
+    private int[] rows = new int[0];
+    private double[] scores = new double[0];
+
+    // Plan for the current piece: the chosen placement, the inputs that reach it, and where
+    // the piece should be if every input so far went through
+    private int plannedPiece = -1; // Engine piece count the plan was made for
+    private int targetRotation;
+    private int targetCol;
+    private int targetRow;
+    private Action[] path = new Action[16];
+    private int pathLength;
+    private int pathIndex;
+    private int expectedRotation;
+    private int expectedCol;
+    private int expectedRow;
+
+    public Bot(double[] weights, int lookahead, long budgetNanos, ForkJoinPool pool) {
+        this(weights, lookahead, budgetNanos, pool, null);
+    }
+
+    // The cache may be shared with other bots that use the same weights and board size
+    public Bot(double[] weights, int lookahead, long budgetNanos, ForkJoinPool pool, EvalCache cache) {
+        if (weights.length != FEATURES) {
+            throw new IllegalArgumentException("Expected " + FEATURES + " weights: " + weights.length);
+        }
+        if (lookahead < 1) {
+            throw new IllegalArgumentException("Lookahead must be at least one piece: " + lookahead);
+        }
+        this.weights = weights.clone();
+        this.lookahead = lookahead;
+        this.budgetNanos = budgetNanos;
+        this.pool = pool;
+        this.cache = cache;
+        this.pieces = new TetrinomeType[lookahead];
+    }
+
+    // Returns the next input on the path to the chosen placement, the last one a hard drop
+    public Action nextAction(Engine engine) {
+        if (plannedPiece != engine.getPiecesPlaced()) {
+            plan(engine);
+            plannedPiece = engine.getPiecesPlaced();
+        } else if (engine.getPieceRotation() != expectedRotation || engine.getPieceCol() != expectedCol
+                || engine.getPieceRow() != expectedRow) {
+            // Gravity or a blocked input moved the piece off the path
+            repath(engine);
+        }
+        if (pathIndex == pathLength) return Action.HARD_DROP;
+
+        Action action = path[pathIndex++];
+        switch (action) {
+            case LEFT: expectedCol--; break;
+            case RIGHT: expectedCol++; break;
+            case ROTATE: expectedRotation = (expectedRotation + 1) & (TetrinomeType.ROTATIONS - 1); break;
+            case DOWN: expectedRow++; break;
+            default: break;
+        }
+        return action;
+    }
+
+    public int getTargetRotation() {
+        return targetRotation;
+    }
+
+    public int getTargetCol() {
+        return targetCol;
+    }
+
+    public int getTargetRow() {
+        return targetRow;
+    }
+
+    // Finds a new path from where the piece is to the cells of the chosen placement, or plans
+    // again if they cannot be reached any more
+    private void repath(Engine engine) {
+        TetrinomeType type = engine.getPieceType();
+        int count = moves.generate(engine);
+        for (int i = 0; i < count; i++) {
+            if (sameCells(type, moves.getRotation(i), moves.getCol(i), moves.getRow(i))) {
+                follow(engine, i);
+                return;
+            }
+        }
+        plan(engine);
+    }
+
+    private boolean sameCells(TetrinomeType type, int rotation, int col, int row) {
+        return Arrays.equals(type.getRowMasks(rotation), type.getRowMasks(targetRotation))
+                && col + type.getMinX(rotation) == targetCol + type.getMinX(targetRotation)
+                && row + type.getMinY(rotation) == targetRow + type.getMinY(targetRotation);
+    }
+
+    // Takes the generator's path to one of its placements, starting from the engine's piece
+    private void follow(Engine engine, int placement) {
+        int length = moves.getPathLength(placement);
+        if (path.length < length) {
+            path = new Action[Math.max(length, path.length * 2)];
+        }
+        pathLength = moves.getPath(placement, path);
+        pathIndex = 0;
+        expectedRotation = engine.getPieceRotation();
+        expectedCol = engine.getPieceCol();
+        expectedRow = engine.getPieceRow();
+    }
+
+    // Chooses the target rotation and column for the active piece
+    private void plan(Engine engine) {
+        int height = engine.getHeight();
+        width = engine.getWidth();
+        fullRow = width == Long.SIZE ? -1L : (1L << width) - 1;
+        if (root == null || root.length != height) {
+            root = new long[height];
+        }
+        for (int row = 0; row < height; row++) {
+            root[row] = engine.getRowBits(row);
+        }
+        rootHash = engine.getHash();
+        pieces[0] = engine.getPieceType();
+        for (int i = 1; i < lookahead; i++) {
+            pieces[i] = engine.getPreview(i - 1);
+        }
+
+        // Every reachable placement of the active piece, however it is reached
+        int count = moves.generate(engine);
+        if (rotations.length < count) {
+            int capacity = Math.max(count, rotations.length * 2);
+            rotations = new int[capacity];
+            cols = new int[capacity];
+            rows = new int[capacity];
+            scores = new double[capacity];
+        }
+        for (int i = 0; i < count; i++) {
+            rotations[i] = moves.getRotation(i);
+            cols[i] = moves.getCol(i);
+            rows[i] = moves.getRow(i);
+        }
+        if (count == 0) {
+            pathLength = 0;
+            pathIndex = 0;
+            return;
+        }
+
+        deadline = System.nanoTime() + budgetNanos;
+        if (pool == null || count == 1) {
+            score(0, count);
+        } else {
+            pool.invoke(new Search(0, count));
+        }
+
+        int chosen = 0;
+        double best = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            if (scores[i] > best) { // NaN scores never win
+                best = scores[i];
+                chosen = i;
+            }
+        }
+        targetRotation = rotations[chosen];
+        targetCol = cols[chosen];
+        targetRow = rows[chosen];
+        follow(engine, chosen);
+    }
+
+    // Scores a range of the active piece's placements, splitting the range in half until one is left
+    private class Search extends RecursiveAction {
+        private static final long serialVersionUID = 1L; // Tasks are never serialized, RecursiveAction is Serializable
+
+        private final int lo;
+        private final int hi;
+
+        Search(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1 && pool != null) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Search(lo, mid), new Search(mid, hi));
+                return;
+            }
+            score(lo, hi);
+        }
+    }
+
+    // Scores the active piece's placements lo (inclusive) to hi (exclusive) on the calling thread
+    private void score(int lo, int hi) {
+        Scratch s = scratch.get();
+        s.ensure(lookahead, root.length, width);
+        long[] board = s.boards[0];
+        for (int i = lo; i < hi; i++) {
+            System.arraycopy(root, 0, board, 0, root.length);
+            int row = rows[i];
+            place(board, pieces[0], rotations[i], cols[i], row);
+            int lines = clearLines(board);
+            long hash = lines == 0 ? rootHash ^ Zobrist.piece(pieces[0], rotations[i], cols[i], row) : Zobrist.hash(board);
+            scores[i] = best(s, 1, board, hash, lines);
+        }
+    }
+
+    // Best score reachable by placing pieces[depth..] onto board, NaN if time ran out
+    private double best(Scratch s, int depth, long[] board, long hash, int lines) {
+        if (depth == lookahead) {
+            return evaluate(s, board, hash, lines);
+        }
+        if (System.nanoTime() - deadline > 0) {
+            return Double.NaN;
+        }
+
+        TetrinomeType type = pieces[depth];
+        long[] next = s.boards[depth];
+        int[] tops = s.tops[depth];
+        skyline(board, tops);
+        double best = NO_MOVE;
+        for (int rotation : DISTINCT_ROTATIONS[type.ordinal()]) {
+            int spawnRow = -type.getMinY(rotation);
+            for (int col = -type.getMinX(rotation); col < width - type.getMaxX(rotation); col++) {
+                if (!fits(board, type, rotation, col, spawnRow)) continue;
+                System.arraycopy(board, 0, next, 0, board.length);
+                int row = drop(next, tops, type, rotation, col, spawnRow);
+                place(next, type, rotation, col, row);
+                int cleared = clearLines(next);
+                long nextHash = cleared == 0 ? hash ^ Zobrist.piece(type, rotation, col, row) : Zobrist.hash(next);
+                double score = best(s, depth + 1, next, nextHash, lines + cleared);
+                if (Double.isNaN(score)) return score;
+                if (score > best) best = score;
+            }
+        }
+        return best;
+    }
+
+    // Weighted sum of aggregate height, holes, bumpiness and lines cleared
+    private double evaluate(Scratch s, long[] board, long hash, int lines) {
+        double score = cache != null ? cache.get(hash) : Double.NaN;
+        if (Double.isNaN(score)) {
+            score = evaluateBoard(s, board);
+            if (cache != null) cache.put(hash, score);
+        }
+        return score + weights[LINES] * lines;
+    }
+
+    // Weighted sum of the features that depend on the board alone
+    private double evaluateBoard(Scratch s, long[] board) {
+        int height = board.length;
+        int[] heights = s.heights;
+        Arrays.fill(heights, 0, width, 0);
+
+        long seen = 0; // Columns with an occupied cell at or above the current row
+        int holes = 0;
+        for (int row = 0; row < height; row++) {
+            long bits = board[row];
+            long fresh = bits & ~seen;
+            while (fresh != 0) {
+                heights[Long.numberOfTrailingZeros(fresh)] = height - row;
+                fresh &= fresh - 1;
+            }
+            seen |= bits;
+            holes += Long.bitCount(seen & ~bits);
+        }
+
+        int aggregate = heights[0];
+        int bumpiness = 0;
+        for (int col = 1; col < width; col++) {
+            aggregate += heights[col];
+            bumpiness += Math.abs(heights[col] - heights[col - 1]);
+        }
+        return weights[AGGREGATE_HEIGHT] * aggregate
+                + weights[HOLES] * holes
+                + weights[BUMPINESS] * bumpiness;
+    }
+
+    // Fills tops with the highest occupied row of each column, board.length when empty
+    private void skyline(long[] board, int[] tops) {
+        Arrays.fill(tops, 0, width, board.length);
+        long unseen = fullRow;
+        for (int row = 0; row < board.length && unseen != 0; row++) {
+            long fresh = board[row] & unseen;
+            unseen &= ~fresh;
+            for (; fresh != 0; fresh &= fresh - 1) {
+                tops[Long.numberOfTrailingZeros(fresh)] = row;
+            }
+        }
+    }
+
+    // Returns the lowest row a piece falls to from the given row, from the piece's bottom
+    // profile against the skyline unless the piece starts under an overhang
+    private int drop(long[] board, int[] tops, TetrinomeType type, int rotation, int col, int row) {
+        int left = col + type.getMinX(rotation);
+        int[] bottoms = type.getBottoms(rotation);
+        int landing = board.length;
+        for (int i = 0; i < bottoms.length; i++) {
+            int below = tops[left + i] - bottoms[i] - 1;
+            if (below < row) {
+                while (fits(board, type, rotation, col, row + 1)) {
+                    row++;
+                }
+                return row;
+            }
+            landing = Math.min(landing, below);
+        }
+        return landing;
+    }
+
+    private boolean fits(long[] board, TetrinomeType type, int rotation, int col, int row) {
+        int left = col + type.getMinX(rotation);
+        int top = row + type.getMinY(rotation);
+        if (left < 0 || col + type.getMaxX(rotation) >= width || top < 0 || row + type.getMaxY(rotation) >= board.length) {
+            return false;
+        }
+        long[] masks = type.getRowMasks(rotation);
+        for (int i = 0; i < masks.length; i++) {
+            if ((board[top + i] & (masks[i] << left)) != 0) return false;
+        }
+        return true;
+    }
+
+    private static void place(long[] board, TetrinomeType type, int rotation, int col, int row) {
+        int left = col + type.getMinX(rotation);
+        int top = row + type.getMinY(rotation);
+        long[] masks = type.getRowMasks(rotation);
+        for (int i = 0; i < masks.length; i++) {
+            board[top + i] |= masks[i] << left;
+        }
+    }
+
+    // Removes complete rows in one bottom-up pass, returns the number removed
+    private int clearLines(long[] board) {
+        int write = board.length - 1;
+        for (int read = board.length - 1; read >= 0; read--) {
+            if (board[read] != fullRow) {
+                board[write--] = board[read];
+            }
+        }
+        for (int row = write; row >= 0; row--) {
+            board[row] = 0;
+        }
+        return write + 1;
+    }
+
+    private static int[][] buildDistinctRotations() {
+        TetrinomeType[] types = TetrinomeType.values();
+        int[][] distinct = new int[types.length][];
+        for (TetrinomeType type : types) {
+            int[] found = new int[TetrinomeType.ROTATIONS];
+            int count = 0;
+            for (int rotation = 0; rotation < TetrinomeType.ROTATIONS; rotation++) {
+                boolean seen = false;
+                for (int i = 0; i < count; i++) {
+                    seen |= Arrays.equals(type.getRowMasks(found[i]), type.getRowMasks(rotation));
+                }
+                if (!seen) found[count++] = rotation;
+            }
+            distinct[type.ordinal()] = Arrays.copyOf(found, count);
+        }
+        return distinct;
+    }
+
+    // Per-thread boards and skylines for each search depth and column heights for evaluation
+    private static final class Scratch {
+        long[][] boards = new long[0][];
+        int[][] tops = new int[0][];
+        int[] heights = new int[0];
+
+        void ensure(int depths, int height, int width) {
+            if (boards.length < depths || boards[0].length != height) {
+                boards = new long[depths][height];
+            }
+            if (heights.length < width) {
+                heights = new int[width];
+                tops = new int[depths][width];
+            } else if (tops.length < depths) {
+                tops = new int[depths][heights.length];
+            }
+        }
+    }
+}
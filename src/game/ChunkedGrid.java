@@ -0,0 +1,300 @@
+package game;
+
+import java.util.Arrays;
+
+// Occupancy grid for boards too big for one long per row. Cells are stored in 64x64 chunks,
+// one long per chunk row with bit col set when the cell is occupied, and a chunk is only
+// allocated the first time a cell in it is filled. Empty space costs a null reference per
+// 64 rows, so memory follows the occupied area rather than the board size.
+public class ChunkedGrid implements Grid {
+    public static final int CHUNK = Long.SIZE; // Chunk width and height in cells
+    private static final int SHIFT = 6;        // log2(CHUNK)
+
+    private final int width;
+    private final int height;
+    private final int chunkCols;
+    private final Band[] bands; // One per 64 rows, null until a cell in it is filled
+    private final int[] columnTops; // Skyline: highest occupied row of each column, height when empty
+    private final long[] unseen;    // Columns still to find while the skyline is rebuilt, by chunk column
+    private int stackTop;       // No occupied cells above this row
+    private int[] fullRows = new int[8]; // Rows that became full since the last clear, in no order
+    private int fullCount;
+    private int chunks;         // Chunks allocated
+    private long hash;          // Zobrist hash of the grid, kept up to date by every change
+
+    // 64 rows of the grid
+    private static final class Band {
+        final long[][] chunks;               // By chunk column, each one long per row
+        final int[] filled = new int[CHUNK]; // Occupied cells in each row
+
+        Band(int chunkCols) {
+            chunks = new long[chunkCols][];
+        }
+    }
+
+    public ChunkedGrid(int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Grid size must be positive: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.chunkCols = (width + CHUNK - 1) >>> SHIFT;
+        this.bands = new Band[(height + CHUNK - 1) >>> SHIFT];
+        this.columnTops = new int[width];
+        Arrays.fill(columnTops, height);
+        this.unseen = new long[chunkCols];
+        this.stackTop = height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getStackTop() {
+        return stackTop;
+    }
+
+    @Override
+    public int getColumnTop(int col) {
+        return columnTops[col];
+    }
+
+    @Override
+    public long getHash() {
+        return hash;
+    }
+
+    // Number of 64x64 chunks allocated so far
+    public int getChunkCount() {
+        return chunks;
+    }
+
+    @Override
+    public boolean isOccupied(int row, int col) {
+        return (getWord(row, col >>> SHIFT) & (1L << col)) != 0;
+    }
+
+    // Returns 64 cells of a row starting at column chunkCol * 64, bit 0 first
+    public long getWord(int row, int chunkCol) {
+        Band band = bands[row >>> SHIFT];
+        if (band == null) return 0;
+        long[] chunk = band.chunks[chunkCol];
+        return chunk == null ? 0 : chunk[row & (CHUNK - 1)];
+    }
+
+    public boolean isRowFull(int row) {
+        Band band = bands[row >>> SHIFT];
+        return band != null && band.filled[row & (CHUNK - 1)] == width;
+    }
+
+    @Override
+    public boolean fits(TetrinomeType type, int rotation, int col, int row) {
+        int left = col + type.getMinX(rotation);
+        int top = row + type.getMinY(rotation);
+        if (left < 0 || col + type.getMaxX(rotation) >= width || top < 0 || row + type.getMaxY(rotation) >= height) {
+            return false;
+        }
+        if (row + type.getMaxY(rotation) < stackTop) return true; // Entirely above the stack
+
+        long[] masks = type.getRowMasks(rotation);
+        int chunkCol = left >>> SHIFT;
+        int shift = left & (CHUNK - 1);
+        for (int i = 0; i < masks.length; i++) {
+            int r = top + i;
+            // A mask can straddle two chunks, the part past bit 63 lands in the next one
+            if ((getWord(r, chunkCol) & (masks[i] << shift)) != 0) return false;
+            if (shift != 0 && (masks[i] >>> (CHUNK - shift)) != 0
+                    && (getWord(r, chunkCol + 1) & (masks[i] >>> (CHUNK - shift))) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void place(TetrinomeType type, int rotation, int col, int row) {
+        int[] cells = type.getCells(rotation);
+        for (int i = 0; i < cells.length; i += 2) {
+            int c = col + cells[i];
+            int r = row + cells[i + 1];
+            if (c >= 0 && c < width && r >= 0 && r < height) set(r, c);
+        }
+    }
+
+    public void set(int row, int col) {
+        Band band = band(row);
+        long[] chunk = chunk(band, col >>> SHIFT);
+        long bit = 1L << col;
+        if ((chunk[row & (CHUNK - 1)] & bit) != 0) return;
+        chunk[row & (CHUNK - 1)] |= bit;
+        if (++band.filled[row & (CHUNK - 1)] == width) {
+            if (fullCount == fullRows.length) fullRows = Arrays.copyOf(fullRows, fullCount * 2);
+            fullRows[fullCount++] = row;
+        }
+        hash ^= Zobrist.key(row, col);
+        if (row < stackTop) stackTop = row;
+        if (row < columnTops[col]) columnTops[col] = row;
+    }
+
+    // The full rows are the ones set() saw fill up, so a lock that completes nothing costs
+    // nothing. Otherwise only the allocated chunks between the top of the stack and the lowest
+    // full row are touched, each row is moved once however many rows are cleared.
+    @Override
+    public int clearLines(int[] clearedRows) {
+        int cleared = fullCount;
+        if (cleared == 0) return 0;
+        fullCount = 0;
+
+        // Bottom first, usually a handful of rows
+        for (int i = 1; i < cleared; i++) {
+            int row = fullRows[i];
+            int j = i;
+            for (; j > 0 && fullRows[j - 1] < row; j--) {
+                fullRows[j] = fullRows[j - 1];
+            }
+            fullRows[j] = row;
+        }
+        if (clearedRows != null) {
+            System.arraycopy(fullRows, 0, clearedRows, 0, Math.min(cleared, clearedRows.length));
+        }
+        int lowest = fullRows[0];
+        int highest = fullRows[cleared - 1];
+
+        int first = stackTop;
+        hash ^= rowsHash(first, lowest);
+        int write = lowest;
+        for (int read = lowest; read >= stackTop; read--) {
+            if (isRowFull(read)) continue;
+            if (read != write) copyRow(read, write);
+            write--;
+        }
+        for (int row = stackTop; row <= write; row++) {
+            clearRow(row);
+        }
+        stackTop += cleared;
+        hash ^= rowsHash(first, lowest);
+
+        // Every column has a cell in the full rows, so its top was either above the highest
+        // one and just drops, or was the highest one and the next cell down has to be found
+        int missing = 0;
+        for (int col = 0; col < width; col++) {
+            if (columnTops[col] == highest) {
+                columnTops[col] = height;
+                unseen[col >>> SHIFT] |= 1L << col;
+                missing++;
+            } else if (columnTops[col] < height) {
+                columnTops[col] += cleared;
+            }
+        }
+        for (int row = highest + cleared; row < height && missing > 0; row++) {
+            for (int chunkCol = 0; chunkCol < chunkCols; chunkCol++) {
+                long fresh = unseen[chunkCol] == 0 ? 0 : getWord(row, chunkCol) & unseen[chunkCol];
+                unseen[chunkCol] &= ~fresh;
+                missing -= Long.bitCount(fresh);
+                for (; fresh != 0; fresh &= fresh - 1) {
+                    columnTops[chunkCol << SHIFT | Long.numberOfTrailingZeros(fresh)] = row;
+                }
+            }
+        }
+        Arrays.fill(unseen, 0); // Columns left empty by the clear
+        return cleared;
+    }
+
+    // Copies the stack up row by row, the allocated chunks at most once each
+    @Override
+    public boolean addGarbage(int count, int holeCol) {
+        if (count > height || stackTop < count) return false;
+
+        hash ^= rowsHash(stackTop, height - 1);
+        for (int row = stackTop; row < height; row++) {
+            copyRow(row, row - count);
+        }
+        for (int row = height - count; row < height; row++) {
+            Band band = band(row);
+            for (int chunkCol = 0; chunkCol < chunkCols; chunkCol++) {
+                int cols = Math.min(CHUNK, width - (chunkCol << SHIFT));
+                long word = cols == CHUNK ? -1L : (1L << cols) - 1;
+                if (holeCol >>> SHIFT == chunkCol) word &= ~(1L << holeCol);
+                chunk(band, chunkCol)[row & (CHUNK - 1)] = word;
+            }
+            band.filled[row & (CHUNK - 1)] = width - 1;
+        }
+        stackTop -= count;
+        hash ^= rowsHash(stackTop, height - 1);
+        for (int i = 0; i < fullCount; i++) {
+            fullRows[i] -= count; // Full rows not cleared yet move up with the stack
+        }
+
+        for (int col = 0; col < width; col++) {
+            if (columnTops[col] < height) columnTops[col] -= count;
+            if (col != holeCol) columnTops[col] = Math.min(columnTops[col], height - count);
+        }
+        return true;
+    }
+
+    // Band holding a row, allocated if it is not yet
+    private Band band(int row) {
+        Band band = bands[row >>> SHIFT];
+        if (band == null) {
+            band = bands[row >>> SHIFT] = new Band(chunkCols);
+        }
+        return band;
+    }
+
+    // Chunk of a band, allocated if it is not yet
+    private long[] chunk(Band band, int chunkCol) {
+        long[] chunk = band.chunks[chunkCol];
+        if (chunk == null) {
+            chunk = band.chunks[chunkCol] = new long[CHUNK];
+            chunks++;
+        }
+        return chunk;
+    }
+
+    private void copyRow(int from, int to) {
+        Band source = bands[from >>> SHIFT];
+        Band target = bands[to >>> SHIFT];
+        if (source == null && target == null) return;
+        for (int chunkCol = 0; chunkCol < chunkCols; chunkCol++) {
+            long word = source == null || source.chunks[chunkCol] == null ? 0 : source.chunks[chunkCol][from & (CHUNK - 1)];
+            if (word == 0 && (target == null || target.chunks[chunkCol] == null)) continue;
+            if (target == null) {
+                target = band(to);
+            }
+            chunk(target, chunkCol)[to & (CHUNK - 1)] = word;
+        }
+        if (target != null) {
+            target.filled[to & (CHUNK - 1)] = source == null ? 0 : source.filled[from & (CHUNK - 1)];
+        }
+    }
+
+    private void clearRow(int row) {
+        Band band = bands[row >>> SHIFT];
+        if (band == null) return;
+        for (long[] chunk : band.chunks) {
+            if (chunk != null) chunk[row & (CHUNK - 1)] = 0;
+        }
+        band.filled[row & (CHUNK - 1)] = 0;
+    }
+
+    // Hash of the cells in rows first through last
+    private long rowsHash(int first, int last) {
+        long h = 0;
+        for (int row = first; row <= last; row++) {
+            Band band = bands[row >>> SHIFT];
+            if (band == null) continue;
+            for (int chunkCol = 0; chunkCol < chunkCols; chunkCol++) {
+                long[] chunk = band.chunks[chunkCol];
+                if (chunk != null) h ^= Zobrist.row(row, chunkCol << SHIFT, chunk[row & (CHUNK - 1)]);
+            }
+        }
+        return h;
+    }
+}
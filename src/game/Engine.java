@@ -0,0 +1,75 @@
+package game;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Headless Tetris rules: the grid, the active piece, the piece queue, line clears and game over.
+// Nothing here touches AWT, so games can be simulated without a display. The rules are in
+// Rules; the grid is a RowGrid, one long per row, so boards are at most 64 wide.
+public class Engine extends Rules<RowGrid> {
+    public Engine(int width, int height) {
+        this(width, height, ThreadLocalRandom.current().nextLong());
+    }
+
+    // Constructor for a reproducible 7-bag piece sequence
+    public Engine(int width, int height, long seed) {
+        this(width, height, seed, RandomizerType.SEVEN_BAG);
+    }
+
+    // Constructor for a reproducible piece sequence from any randomizer
+    public Engine(int width, int height, long seed, RandomizerType randomizer) {
+        super(new RowGrid(width, height), seed, randomizer);
+    }
+
+    // Replaces the grid, the active piece and the counters, used to load snapshots. A null
+    // type is a finished game. Timing restarts: gravity and lock delay counters are reset.
+    void restore(long[] rows, TetrinomeType type, int rotation, int col, int row, int pieces, int lines) {
+        grid.restore(rows);
+        restorePiece(type, rotation, col, row, pieces, lines);
+    }
+
+    // Replaces only rows top through bottom of the grid, the undo history restores the
+    // rows that differ and then the piece
+    void restoreRows(long[] rows, int top, int bottom) {
+        grid.restore(rows, top, bottom);
+    }
+
+    // Rows changed since the last takeChanges, for the undo history
+    int getChangedTop() {
+        return grid.getChangedTop();
+    }
+
+    int getChangedBottom() {
+        return grid.getChangedBottom();
+    }
+
+    long takeChanges() {
+        return grid.takeChanges();
+    }
+
+    long getChangeMark() {
+        return grid.getChangeMark();
+    }
+
+    // Rows changed since the last markClean, used by renderers to redraw only what changed
+    public int getDirtyTop() {
+        return grid.getDirtyTop();
+    }
+
+    public int getDirtyBottom() {
+        return grid.getDirtyBottom();
+    }
+
+    public void markClean() {
+        grid.markClean();
+    }
+
+    // Returns the occupancy mask of a row, bit col set when the cell is occupied
+    public long getRowBits(int row) {
+        return grid.getRowBits(row);
+    }
+
+    // Overwrites a row of the grid, used to set up positions directly
+    public void setRowBits(int row, long bits) {
+        grid.setRowBits(row, bits);
+    }
+}
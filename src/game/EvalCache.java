@@ -0,0 +1,61 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed-size, lock-free map from a board hash to its evaluation, shared by search threads.
+// Each slot holds (hash ^ value, value); a slot torn by a concurrent write fails the XOR check
+// and reads as a miss. Slots are direct-mapped and a store always replaces the old entry,
+// so memory stays at the size chosen up front however long the analysis runs.
+public class EvalCache {
+    private final AtomicLongArray slots; // Two longs per entry
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // Capacity is rounded up to a power of two, each entry takes 16 bytes
+    public EvalCache(int capacity) {
+        if (capacity < 1 || capacity > 1 << 29) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^29: " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicLongArray(2 * size);
+        this.mask = size - 1;
+    }
+
+    // Returns the cached evaluation of a hash, or NaN if it is not cached
+    public double get(long hash) {
+        int slot = index(hash);
+        long check = slots.getOpaque(slot);
+        long value = slots.getOpaque(slot + 1);
+        if ((check ^ value) == hash && (check | value) != 0) {
+            hits.increment();
+            return Double.longBitsToDouble(value);
+        }
+        misses.increment();
+        return Double.NaN;
+    }
+
+    public void put(long hash, double evaluation) {
+        int slot = index(hash);
+        long value = Double.doubleToRawLongBits(evaluation);
+        slots.setOpaque(slot, hash ^ value);
+        slots.setOpaque(slot + 1, value);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    private int index(long hash) {
+        return ((int) (hash ^ (hash >>> 32)) & mask) << 1;
+    }
+}
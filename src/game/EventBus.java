@@ -0,0 +1,186 @@
+package game;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Broadcast ring of game events. One thread publishes, normally the game loop through Engine,
+// and any number of subscribers read every event at their own pace, each from its own thread.
+// Slots are preallocated and events are packed into longs, so publishing never allocates.
+// Unlike a Disruptor the publisher never waits: a subscriber that falls a whole ring behind
+// skips the events that were overwritten and counts them as dropped.
+public class EventBus {
+    public enum Kind {
+        SPAWN,         // A piece entered the board
+        MOVE,          // The active piece moved or rotated, by an input or by gravity
+        LOCK,          // The active piece locked where it stands
+        LINES_CLEARED, // The lock completed rows, count says how many
+        GAME_OVER      // The next piece did not fit or garbage pushed the stack out
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final TetrinomeType[] TYPES = TetrinomeType.values();
+    private static final int STRIDE = 4; // Longs per slot: sequence, packed fields, position, tick
+
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong(); // Sequence of the next event to publish
+
+    // Capacity is rounded up to a power of two
+    public EventBus(int capacity) {
+        if (capacity < 1 || capacity > 1 << 26) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^26: " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicLongArray(STRIDE * size);
+        this.mask = size - 1;
+        for (int slot = 0; slot < size; slot++) {
+            slots.setPlain(STRIDE * slot, -1); // No sequence yet
+        }
+    }
+
+    // Publisher side. Type is null for GAME_OVER, count is 0 but for LINES_CLEARED.
+    public void publish(Kind kind, TetrinomeType type, int rotation, int col, int row, int count, long tick) {
+        long sequence = cursor.getPlain();
+        int slot = ((int) sequence & mask) * STRIDE;
+
+        // Seqlock write: a subscriber reading the slot meanwhile sees the sequence change
+        slots.setOpaque(slot, -1);
+        VarHandle.storeStoreFence();
+        slots.setPlain(slot + 1, pack(kind, type, rotation, count));
+        slots.setPlain(slot + 2, (long) row << 32 | (col & 0xFFFFFFFFL));
+        slots.setPlain(slot + 3, tick);
+        slots.setRelease(slot, sequence);
+        cursor.setRelease(sequence + 1);
+    }
+
+    // Events published so far
+    public long getPublished() {
+        return cursor.getAcquire();
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    // A reader that starts with the next event published
+    public Subscriber subscribe() {
+        return new Subscriber(cursor.getAcquire());
+    }
+
+    // Fields: kind 3 bits, type + 1 4 bits (0 for none), rotation 2, count 32 from bit 32.
+    // The piece position gets a long of its own, column low and row high, since a huge board
+    // can be any size.
+    private static long pack(Kind kind, TetrinomeType type, int rotation, int count) {
+        return kind.ordinal()
+                | (long) (type == null ? 0 : type.ordinal() + 1) << 3
+                | (long) (rotation & 3) << 7
+                | (long) count << 32;
+    }
+
+    // Reads the bus from one thread. poll loads the next event into the getters, so reading
+    // allocates nothing either.
+    public class Subscriber {
+        private long next; // Sequence of the next event to read
+        private long published; // Last view of the publisher's cursor, saves reading it every poll
+        private long dropped;
+        private Kind kind;
+        private TetrinomeType type;
+        private int rotation;
+        private int col;
+        private int row;
+        private int count;
+        private long tick;
+
+        private Subscriber(long next) {
+            this.next = next;
+            this.published = next;
+        }
+
+        // Moves to the next event. Returns false when every published event has been read.
+        public boolean poll() {
+            while (true) {
+                if (next >= published) {
+                    published = cursor.getAcquire();
+                    if (next >= published) return false;
+                }
+                if (published - next > mask + 1) {
+                    // Lapped, the oldest events still in the ring are the ones to read
+                    dropped += published - (mask + 1) - next;
+                    next = published - (mask + 1);
+                }
+
+                int slot = ((int) next & mask) * STRIDE;
+                if (slots.getAcquire(slot) == next) {
+                    long fields = slots.getPlain(slot + 1);
+                    long position = slots.getPlain(slot + 2);
+                    long stamp = slots.getPlain(slot + 3);
+                    VarHandle.loadLoadFence();
+                    if (slots.getPlain(slot) == next) {
+                        unpack(fields, position);
+                        tick = stamp;
+                        next++;
+                        return true;
+                    }
+                }
+                // The publisher has lapped this subscriber and is overwriting the slot
+                published = cursor.getAcquire();
+                if (published - next <= mask + 1) {
+                    dropped++; // Only this event is lost, it is being overwritten right now
+                    next++;
+                }
+            }
+        }
+
+        private void unpack(long fields, long position) {
+            kind = KINDS[(int) fields & 7];
+            int typeIndex = (int) (fields >>> 3) & 15;
+            type = typeIndex == 0 ? null : TYPES[typeIndex - 1];
+            rotation = (int) (fields >>> 7) & 3;
+            count = (int) (fields >>> 32);
+            col = (int) position;
+            row = (int) (position >>> 32);
+        }
+
+        // Events overwritten before this subscriber read them
+        public long getDropped() {
+            return dropped;
+        }
+
+        // Events published but not read yet, capped at the ring capacity
+        public long getLag() {
+            return Math.min(cursor.getAcquire() - next, mask + 1);
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        // The piece the event is about, null for GAME_OVER
+        public TetrinomeType getType() {
+            return type;
+        }
+
+        public int getRotation() {
+            return rotation;
+        }
+
+        public int getCol() {
+            return col;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        // Rows cleared, for LINES_CLEARED
+        public int getCount() {
+            return count;
+        }
+
+        // Engine tick the event happened on
+        public long getTick() {
+            return tick;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package game;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+CLASS: FrameExporter
+DESCRIPTION: Turns replay logs into video frames without a display. Each log is
+             re-simulated by ReplayPlayer and every Nth tick is drawn by a
+             FrameRenderer into one of a fixed set of images; encoder threads
+             write them out and hand the images back, so rendering never gets
+             more than two frames per thread ahead of encoding. Frames are
+             numbered PNGs, or with --raw one file of packed 24-bit RGB frames
+             that ffmpeg reads as rawvideo (-pix_fmt rgb24 -s WxH).
+USAGE: java -Djava.awt.headless=true game.FrameExporter [--raw] [--every N]
+           [--cell N] [--threads N] [--level 0-9] outDir replay1.bin ...
+*/
+public class FrameExporter implements AutoCloseable {
+    private final Path outDir;
+    private final int every;     // Ticks per exported frame
+    private final int cellSize;
+    private final boolean raw;
+    private final ExecutorService encoders;
+    private final int slots;     // Images in flight
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final ThreadLocal<PngEncoder> pngEncoders; // PNG deflate level, 1 is fastest
+    private final ThreadLocal<ByteBuffer> rgbBuffers = new ThreadLocal<>();
+
+    public FrameExporter(Path outDir, int every, int cellSize, boolean raw, int level, int threads) {
+        if (every < 1) throw new IllegalArgumentException("Frame interval must be at least one tick: " + every);
+        if (level < 0 || level > 9) throw new IllegalArgumentException("PNG level must be 0 to 9: " + level);
+        this.outDir = outDir;
+        this.every = every;
+        this.cellSize = cellSize;
+        this.raw = raw;
+        this.pngEncoders = ThreadLocal.withInitial(() -> new PngEncoder(level));
+        this.encoders = Executors.newFixedThreadPool(threads);
+        this.slots = 2 * threads;
+    }
+
+    // Renders and writes the frames of one replay, returns the number of frames
+    public long export(Path replay) throws IOException, InterruptedException {
+        String name = replay.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+        try (FileChannel channel = FileChannel.open(replay, StandardOpenOption.READ)) {
+            MappedByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer header = log.duplicate();
+            header.position(5); // Past the magic and version, ReplayPlayer checks them
+            FrameRenderer renderer = new FrameRenderer((int) readVarint(header), (int) readVarint(header), cellSize);
+
+            BlockingQueue<BufferedImage> free = new ArrayBlockingQueue<>(slots);
+            for (int i = 0; i < slots; i++) {
+                free.add(renderer.newImage());
+            }
+            FileChannel rawOut = raw ? FileChannel.open(outDir.resolve(name + ".rgb"), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING) : null;
+            long[] frames = new long[1];
+            try {
+                ReplayPlayer.play(replay, log, engine -> {
+                    if (engine.getTicks() % every != 0) return;
+                    BufferedImage image;
+                    try {
+                        image = free.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while exporting " + replay, e);
+                    }
+                    checkFailure();
+                    renderer.render(engine, image);
+                    long index = frames[0]++;
+                    encoders.execute(() -> {
+                        try {
+                            if (rawOut != null) {
+                                writeRaw(image, rawOut, index);
+                            } else {
+                                writePng(image, outDir.resolve(String.format("%s-%06d.png", name, index)));
+                            }
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        } finally {
+                            free.add(image);
+                        }
+                    });
+                });
+            } finally {
+                // The encoders have finished with this replay once every image is back, also when
+                // the replay failed part way, so none of them is still writing to rawOut
+                try {
+                    for (int i = 0; i < slots; i++) {
+                        free.take();
+                    }
+                } finally {
+                    if (rawOut != null) rawOut.close();
+                }
+            }
+            checkFailure();
+            return frames[0];
+        }
+    }
+
+    private void checkFailure() {
+        Throwable t = failure.get();
+        if (t instanceof IOException) throw new UncheckedIOException((IOException) t);
+        if (t != null) throw new IllegalStateException("Frame encoding failed", t);
+    }
+
+    private void writePng(BufferedImage image, Path path) throws IOException {
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        try (OutputStream out = Files.newOutputStream(path)) {
+            pngEncoders.get().write(pixels, image.getWidth(), image.getHeight(), out);
+        }
+        bytesWritten.addAndGet(Files.size(path));
+    }
+
+    // Packs a frame to 24-bit RGB and writes it at its place in the file, frames may finish in any order
+    private void writeRaw(BufferedImage image, FileChannel out, long index) throws IOException {
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        ByteBuffer rgb = rgbBuffers.get();
+        if (rgb == null || rgb.capacity() != pixels.length * 3) {
+            rgb = ByteBuffer.allocateDirect(pixels.length * 3);
+            rgbBuffers.set(rgb);
+        }
+        rgb.clear();
+        for (int pixel : pixels) {
+            rgb.put((byte) (pixel >>> 16)).put((byte) (pixel >>> 8)).put((byte) pixel);
+        }
+        rgb.flip();
+        long position = index * rgb.limit();
+        while (rgb.hasRemaining()) {
+            position += out.write(rgb, position);
+        }
+        bytesWritten.addAndGet(pixels.length * 3L);
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        encoders.shutdown();
+        try {
+            if (!encoders.awaitTermination(1, TimeUnit.MINUTES)) {
+                throw new IOException("Frame encoders did not finish within a minute");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the frame encoders");
+        }
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean raw = false;
+        int every = 1;
+        int cellSize = 30;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int level = 1;
+        int i = 0;
+        for (; i < args.length && args[i].startsWith("--"); i++) {
+            switch (args[i]) {
+                case "--raw": raw = true; break;
+                case "--every": every = Integer.parseInt(args[++i]); break;
+                case "--cell": cellSize = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--level": level = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (args.length - i < 2) {
+            System.err.println("Usage: FrameExporter [--raw] [--every N] [--cell N] [--threads N] [--level 0-9] outDir replay.bin ...");
+            System.exit(2);
+        }
+        Path outDir = Files.createDirectories(Paths.get(args[i++]));
+
+        long start = System.nanoTime();
+        long frames = 0;
+        try (FrameExporter exporter = new FrameExporter(outDir, every, cellSize, raw, level, threads)) {
+            for (; i < args.length; i++) {
+                frames += exporter.export(Paths.get(args[i]));
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d frames in %.1f s, %.0f frames/s on %d threads, %.1f MB written%n",
+                    frames, seconds, frames / seconds, threads, exporter.getBytesWritten() / 1e6);
+        }
+    }
+}
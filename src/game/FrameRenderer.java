@@ -0,0 +1,134 @@
+package game;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+// Draws Engine positions straight into the int pixels of a BufferedImage, with no Graphics,
+// Canvas or display involved, for exporting frames on headless machines. Frames look like
+// the board on screen: grid lines, placed cells, the ghost outline and the active piece.
+// The grid is copied from a prepared template each frame and cells are filled a pixel row
+// at a time. A renderer keeps no per-frame state, so one can draw into several images,
+// but it is not meant to be shared between threads.
+public class FrameRenderer {
+    private static final int BACKGROUND = 0x000000;
+    private static final int GRID = 0x404040; // Color.DARK_GRAY
+    private static final int PLACED = 0xFFFFFF;
+    private static final int[] PIECE = new int[TetrinomeType.values().length];
+
+    static {
+        for (TetrinomeType type : TetrinomeType.values()) {
+            PIECE[type.ordinal()] = Tetrinome.colorOf(type).getRGB() & 0xFFFFFF;
+        }
+    }
+
+    private final int width;     // Board size in cells
+    private final int height;
+    private final int cellSize;
+    private final int imageWidth;
+    private final int imageHeight;
+    private final int[] template; // Background and grid lines
+
+    public FrameRenderer(int width, int height, int cellSize) {
+        if (cellSize < 2) throw new IllegalArgumentException("Cell size must be at least 2 pixels: " + cellSize);
+        this.width = width;
+        this.height = height;
+        this.cellSize = cellSize;
+        this.imageWidth = width * cellSize + 1;
+        this.imageHeight = height * cellSize + 1;
+        if ((long) imageWidth * imageHeight > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Frame too large: " + imageWidth + "x" + imageHeight);
+        }
+
+        // Same lines as Board's grid image, a rectangle around every cell
+        template = new int[imageWidth * imageHeight];
+        Arrays.fill(template, BACKGROUND);
+        for (int y = 0; y < imageHeight; y++) {
+            int rowStart = y * imageWidth;
+            if (y % cellSize == 0) {
+                Arrays.fill(template, rowStart, rowStart + imageWidth, GRID);
+            } else {
+                for (int x = 0; x < imageWidth; x += cellSize) {
+                    template[rowStart + x] = GRID;
+                }
+            }
+        }
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    // A frame-sized image whose pixels are one int per pixel, for render to draw into
+    public BufferedImage newImage() {
+        return new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+    }
+
+    // Draws an engine's position into an image from newImage
+    public void render(Engine engine, BufferedImage image) {
+        if (image.getWidth() != imageWidth || image.getHeight() != imageHeight
+                || !(image.getRaster().getDataBuffer() instanceof DataBufferInt)) {
+            throw new IllegalArgumentException("Image is not a " + imageWidth + "x" + imageHeight + " int image");
+        }
+        render(engine, ((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+    }
+
+    // Draws an engine's position into imageWidth * imageHeight RGB pixels, row by row
+    public void render(Engine engine, int[] pixels) {
+        if (engine.getWidth() != width || engine.getHeight() != height) {
+            throw new IllegalArgumentException("Engine is " + engine.getWidth() + "x" + engine.getHeight()
+                    + ", renderer is " + width + "x" + height);
+        }
+        System.arraycopy(template, 0, pixels, 0, template.length);
+
+        for (int row = engine.getStackTop(); row < height; row++) {
+            long bits = engine.getRowBits(row);
+            while (bits != 0) {
+                int col = Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                fillCell(pixels, col, row, PLACED);
+            }
+        }
+
+        TetrinomeType type = engine.getPieceType();
+        if (type == null) return;
+        int color = PIECE[type.ordinal()];
+        int[] cells = type.getCells(engine.getPieceRotation());
+        int col = engine.getPieceCol();
+        int row = engine.getPieceRow();
+        int ghostRow = engine.getGhostRow();
+        for (int i = 0; i < cells.length; i += 2) {
+            outlineCell(pixels, col + cells[i], ghostRow + cells[i + 1], color);
+        }
+        for (int i = 0; i < cells.length; i += 2) {
+            fillCell(pixels, col + cells[i], row + cells[i + 1], color);
+        }
+    }
+
+    // Covers a cell and its top and left grid lines, like fillRect
+    private void fillCell(int[] pixels, int col, int row, int color) {
+        if (col < 0 || col >= width || row < 0 || row >= height) return;
+        int start = row * cellSize * imageWidth + col * cellSize;
+        Arrays.fill(pixels, start, start + cellSize, color);
+        for (int y = 1; y < cellSize; y++) {
+            System.arraycopy(pixels, start, pixels, start + y * imageWidth, cellSize);
+        }
+    }
+
+    // Draws a one pixel border just inside a cell, like drawRect(x, y, size - 1, size - 1)
+    private void outlineCell(int[] pixels, int col, int row, int color) {
+        if (col < 0 || col >= width || row < 0 || row >= height) return;
+        int start = row * cellSize * imageWidth + col * cellSize;
+        int last = cellSize - 1;
+        Arrays.fill(pixels, start, start + cellSize, color);
+        Arrays.fill(pixels, start + last * imageWidth, start + last * imageWidth + cellSize, color);
+        for (int y = 1; y < last; y++) {
+            pixels[start + y * imageWidth] = color;
+            pixels[start + y * imageWidth + last] = color;
+        }
+    }
+}
@@ -2,20 +2,29 @@ package game;
 
 /*
 CLASS: Game
-DESCRIPTION: A painted canvas in its own window, updated every tenth second.
+DESCRIPTION: A painted canvas in its own window, driven by a loop thread that
+             runs logic ticks at a fixed rate and renders through a
+             BufferStrategy between them.
 USAGE: Extended by YourGameName.
 NOTE: You don't need to understand the details here, no fiddling neccessary.*/
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
 
-abstract class Game extends Canvas {
-  protected boolean on = true;
+abstract class Game extends Canvas implements Runnable {
+  private static final long SECOND = 1_000_000_000L;
+  private static final long MAX_LAG = SECOND / 4; // Ticks further behind than this are dropped
+
+  protected volatile boolean on = true;
   protected int width, height;
-  protected Image buffer;
+  private volatile int tickRate = 60;  // Logic ticks per second
+  private volatile int frameRate;      // Rendered frames per second
+  private Thread loop;
+  protected final Metrics metrics = new Metrics(); // Timings, touched only by the loop thread
   
 	public Game(String name, int inWidth, int inHeight) {
-	  width = inWidth;
-	  height = inHeight;
+	  this(inWidth, inHeight);
 	  
 	  // Frame can be read as 'window' here.
     Frame frame = new Frame(name);
@@ -27,23 +36,102 @@ abstract class Game extends Canvas {
       public void windowClosing(WindowEvent e) {System.exit(0);} 
     });
     
-    buffer = createImage(width, height);
+    // Rendering happens on the loop thread, AWT repaint requests are not needed
+    setIgnoreRepaint(true);
+    createBufferStrategy(2);
+    int refresh = getGraphicsConfiguration().getDevice().getDisplayMode().getRefreshRate();
+    frameRate = refresh == DisplayMode.REFRESH_RATE_UNKNOWN ? 60 : refresh;
 	}
   
-  // 'paint' will be called every tenth of a second that the game is on.
-	abstract public void paint(Graphics brush);
-  
-  // 'update' paints to a buffer then to the screen, then waits a tenth of
-  // a second before repeating itself, assuming the game is on. This is done
-  // to avoid a choppy painting experience if repainted in pieces.
-  public void update(Graphics brush) {
-    paint(buffer.getGraphics());
-		brush.drawImage(buffer,0,0,this);
-    if (on) {sleep(10); repaint();}
+  // A game with no window, for tests: nothing runs the loop, the caller ticks it and
+  // paints it with a Graphics of its own.
+  protected Game(int inWidth, int inHeight) {
+    width = inWidth;
+    height = inHeight;
   }
   
-  // 'sleep' is a simple helper function used in 'update'.
-  private void sleep(int time) {
-    try {Thread.sleep(time);} catch(Exception exc){};
+  // 'paint' draws one frame, it is called from the loop thread once per frame.
+	abstract public void paint(Graphics brush);
+
+  // 'tick' advances the game logic by one fixed step, tickRate times a second.
+  protected void tick() {}
+
+  // 'frameShown' is called on the loop thread right after a frame reaches the screen.
+  protected void frameShown(long nanos) {}
+
+  // 'start' launches the loop thread, call it once the subclass is constructed.
+  public void start() {
+    loop = new Thread(this, "game-loop");
+    loop.start();
+  }
+
+  public void setTickRate(int ticksPerSecond) {
+    if (ticksPerSecond < 1) throw new IllegalArgumentException("Tick rate must be positive: " + ticksPerSecond);
+    tickRate = ticksPerSecond;
+  }
+
+  public int getTickRate() {
+    return tickRate;
+  }
+
+  public void setFrameRate(int framesPerSecond) {
+    if (framesPerSecond < 1) throw new IllegalArgumentException("Frame rate must be positive: " + framesPerSecond);
+    frameRate = framesPerSecond;
+  }
+
+  // 'run' is the loop: it catches up on logic ticks with a fixed timestep, renders
+  // when a frame is due, and parks until the next tick or frame.
+  public void run() {
+    BufferStrategy strategy = getBufferStrategy();
+    long previous = System.nanoTime();
+    long lag = 0;
+    long nextFrame = previous;
+    long lastShown = 0;
+    while (on) {
+      long tickNanos = SECOND / tickRate;
+      long frameNanos = SECOND / frameRate;
+      long now = System.nanoTime();
+      lag += now - previous;
+      previous = now;
+      if (lag > MAX_LAG) lag = tickNanos; // Too far behind, skip instead of spiralling
+
+      while (lag >= tickNanos) {
+        long start = System.nanoTime();
+        tick();
+        metrics.recordTick(System.nanoTime() - start);
+        lag -= tickNanos;
+      }
+
+      now = System.nanoTime();
+      if (now - nextFrame >= 0) {
+        render(strategy);
+        long shown = System.nanoTime();
+        if (lastShown != 0) metrics.recordFrame(shown - lastShown);
+        lastShown = shown;
+        frameShown(shown);
+        metrics.roll(shown);
+        nextFrame += frameNanos;
+        if (now - nextFrame >= 0) nextFrame = now + frameNanos; // Missed frames are not replayed
+      }
+
+      long wait = Math.min(tickNanos - lag, nextFrame - System.nanoTime());
+      if (wait > 0) LockSupport.parkNanos(wait);
+    }
+  }
+
+  // 'render' paints into the back buffer and flips it, redrawing if the buffer was lost.
+  private void render(BufferStrategy strategy) {
+    do {
+      do {
+        Graphics brush = strategy.getDrawGraphics();
+        try {
+          paint(brush);
+        } finally {
+          brush.dispose();
+        }
+      } while (strategy.contentsRestored());
+      strategy.show();
+    } while (strategy.contentsLost());
+    Toolkit.getDefaultToolkit().sync();
   }
 }
@@ -0,0 +1,38 @@
+package game;
+
+// Occupied cells of a board, everything the rules in Rules need to know about them. RowGrid
+// keeps one long per row for boards up to 64 wide, ChunkedGrid keeps 64x64 chunks for boards
+// of any size. Both keep the top of the stack, a skyline of column tops and a Zobrist hash up
+// to date as cells change, so the rules never scan the grid for them.
+public interface Grid {
+    int getWidth();
+
+    int getHeight();
+
+    // Highest row that may hold occupied cells, height when the grid is empty
+    int getStackTop();
+
+    // Highest occupied row of a column, height when the column is empty
+    int getColumnTop(int col);
+
+    boolean isOccupied(int row, int col);
+
+    // Checks a piece at a grid position against the bounds and the occupied cells
+    boolean fits(TetrinomeType type, int rotation, int col, int row);
+
+    // Marks the cells of a piece as occupied, cells outside the grid are dropped
+    void place(TetrinomeType type, int rotation, int col, int row);
+
+    // Removes the full rows, shifting the rows above down, and returns how many there were.
+    // The cleared rows are stored bottom first and numbered as before the clear into
+    // clearedRows when it is given, as many as fit.
+    int clearLines(int[] clearedRows);
+
+    // Pushes the stack up count rows and fills the rows freed at the bottom with every cell
+    // but holeCol. Returns false, leaving the grid as it was, if the stack would be pushed out
+    // of the top.
+    boolean addGarbage(int count, int holeCol);
+
+    // Zobrist hash of the occupied cells, equal grids have equal hashes
+    long getHash();
+}
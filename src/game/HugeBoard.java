@@ -0,0 +1,189 @@
+package game;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Draws the part of a HugeEngine that fits in a viewport and feeds it key presses. Only
+// the visible cells are read and painted, so a frame costs the same however big the board
+// is. The view follows the active piece; Page Up/Down and Home/End scroll it by half a
+// screen, and F goes back to following.
+public class HugeBoard implements KeyListener {
+    private final HugeEngine engine;
+    private final int cellSize;
+    private final int offsetX;     // Canvas position of the viewport
+    private final int offsetY;
+    private final int visibleCols; // Cells that fit in the viewport
+    private final int visibleRows;
+    private int viewCol;           // Top left cell shown
+    private int viewRow;
+    private boolean follow = true; // Keep the active piece in view
+    // View keys from the AWT thread, applied by the loop on its next tick
+    private final AtomicInteger scrollRows = new AtomicInteger(); // Half screens to scroll, Page Up/Down add to it
+    private final AtomicInteger scrollCols = new AtomicInteger(); // Home and End add to it
+    private final AtomicBoolean followRequested = new AtomicBoolean();
+    private final InputQueue inputs = new InputQueue(256);
+    private final InputHandler inputHandler;
+
+    public HugeBoard(HugeEngine engine, int cellSize, int viewWidth, int viewHeight) {
+        this.engine = engine;
+        this.cellSize = cellSize;
+        this.visibleCols = Math.min(engine.getWidth(), viewWidth / cellSize);
+        this.visibleRows = Math.min(engine.getHeight(), viewHeight / cellSize);
+        this.offsetX = (viewWidth - visibleCols * cellSize) / 2;
+        this.offsetY = (viewHeight - visibleRows * cellSize) / 2;
+        this.inputHandler = new InputHandler(inputs, engine::step);
+        followPiece();
+    }
+
+    // Handles queued input and advances the engine by one logic tick
+    public void tick() {
+        inputHandler.update();
+        engine.tick();
+        scrollView();
+        if (follow) followPiece();
+    }
+
+    // Applies the view keys pressed since the last tick, F winning over scrolling
+    private void scrollView() {
+        int rows = scrollRows.getAndSet(0);
+        int cols = scrollCols.getAndSet(0);
+        if (rows != 0 || cols != 0) {
+            viewRow += rows * (visibleRows / 2);
+            viewCol += cols * (visibleCols / 2);
+            follow = false;
+            clampView();
+        }
+        if (followRequested.getAndSet(false)) follow = true;
+    }
+
+    // Scrolls just far enough to keep the active piece a quarter screen from the edges
+    private void followPiece() {
+        if (engine.getPieceType() == null) return;
+        int marginCols = visibleCols / 4;
+        int marginRows = visibleRows / 4;
+        int col = engine.getPieceCol();
+        int row = engine.getPieceRow();
+        if (col < viewCol + marginCols) viewCol = col - marginCols;
+        if (col >= viewCol + visibleCols - marginCols) viewCol = col - visibleCols + marginCols + 1;
+        if (row < viewRow + marginRows) viewRow = row - marginRows;
+        if (row >= viewRow + visibleRows - marginRows) viewRow = row - visibleRows + marginRows + 1;
+        clampView();
+    }
+
+    private void clampView() {
+        viewCol = Math.max(0, Math.min(viewCol, engine.getWidth() - visibleCols));
+        viewRow = Math.max(0, Math.min(viewRow, engine.getHeight() - visibleRows));
+    }
+
+    public void draw(Graphics brush) {
+        int right = offsetX + visibleCols * cellSize;
+        int bottom = offsetY + visibleRows * cellSize;
+        brush.setColor(Color.DARK_GRAY);
+        for (int col = 0; col <= visibleCols; col++) {
+            brush.drawLine(offsetX + col * cellSize, offsetY, offsetX + col * cellSize, bottom);
+        }
+        for (int row = 0; row <= visibleRows; row++) {
+            brush.drawLine(offsetX, offsetY + row * cellSize, right, offsetY + row * cellSize);
+        }
+
+        // Placed cells, 64 at a time from the grid's words, clipped to the visible columns
+        ChunkedGrid grid = engine.getGrid();
+        brush.setColor(Color.WHITE);
+        int lastCol = viewCol + visibleCols - 1;
+        int firstRow = Math.max(viewRow, grid.getStackTop());
+        for (int row = firstRow; row < viewRow + visibleRows; row++) {
+            for (int chunkCol = viewCol / ChunkedGrid.CHUNK; chunkCol <= lastCol / ChunkedGrid.CHUNK; chunkCol++) {
+                long bits = grid.getWord(row, chunkCol);
+                int base = chunkCol * ChunkedGrid.CHUNK;
+                if (base < viewCol) bits &= -1L << (viewCol - base);
+                if (lastCol - base < ChunkedGrid.CHUNK - 1) bits &= -1L >>> (ChunkedGrid.CHUNK - 1 - (lastCol - base));
+                while (bits != 0) {
+                    int col = base + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    brush.fillRect(toX(col), toY(row), cellSize, cellSize);
+                }
+            }
+        }
+
+        TetrinomeType type = engine.getPieceType();
+        if (type == null) return;
+        int[] cells = type.getCells(engine.getPieceRotation());
+        int col = engine.getPieceCol();
+        int row = engine.getPieceRow();
+        int ghostRow = engine.getGhostRow();
+        brush.setColor(Tetrinome.colorOf(type));
+        for (int i = 0; i < cells.length; i += 2) {
+            paintCell(brush, col + cells[i], ghostRow + cells[i + 1], false);
+            paintCell(brush, col + cells[i], row + cells[i + 1], true);
+        }
+    }
+
+    // Paints one piece cell if it is in view, filled or as a ghost outline
+    private void paintCell(Graphics brush, int col, int row, boolean filled) {
+        if (col < viewCol || col >= viewCol + visibleCols || row < viewRow || row >= viewRow + visibleRows) return;
+        if (filled) {
+            brush.fillRect(toX(col), toY(row), cellSize, cellSize);
+        } else {
+            brush.drawRect(toX(col), toY(row), cellSize - 1, cellSize - 1);
+        }
+    }
+
+    private int toX(int col) {
+        return offsetX + (col - viewCol) * cellSize;
+    }
+
+    private int toY(int row) {
+        return offsetY + (row - viewRow) * cellSize;
+    }
+
+    public HugeEngine getEngine() {
+        return engine;
+    }
+
+    public InputHandler getInputHandler() {
+        return inputHandler;
+    }
+
+    // Maps the arrow keys and space to actions, null for other keys
+    private Action toAction(KeyEvent e) {
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_LEFT: return Action.LEFT;
+            case KeyEvent.VK_RIGHT: return Action.RIGHT;
+            case KeyEvent.VK_DOWN: return Action.DOWN;
+            case KeyEvent.VK_UP: return Action.ROTATE;
+            case KeyEvent.VK_SPACE: return Action.HARD_DROP;
+            default: return null;
+        }
+    }
+
+    @Override
+    public void keyPressed(KeyEvent e) {
+        Action action = toAction(e);
+        if (action != null) {
+            inputs.offer(InputHandler.press(action), System.nanoTime());
+            return;
+        }
+        // The view belongs to the loop thread, scrolling is only requested here
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_PAGE_UP: scrollRows.decrementAndGet(); break;
+            case KeyEvent.VK_PAGE_DOWN: scrollRows.incrementAndGet(); break;
+            case KeyEvent.VK_HOME: scrollCols.decrementAndGet(); break;
+            case KeyEvent.VK_END: scrollCols.incrementAndGet(); break;
+            case KeyEvent.VK_F: followRequested.set(true); break;
+            default: break;
+        }
+    }
+
+    @Override
+    public void keyReleased(KeyEvent e) {
+        Action action = toAction(e);
+        if (action != null) inputs.offer(InputHandler.release(action), System.nanoTime());
+    }
+
+    @Override
+    public void keyTyped(KeyEvent e) {}
+}
@@ -0,0 +1,21 @@
+package game;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Headless rules for boards of any size, for stress and cooperative modes. The rules are
+// Engine's, from Rules, but the grid is a ChunkedGrid, so boards may be thousands of columns
+// wide and far taller than the screen. Moves cost the same on any board; a line clear costs
+// the stack above the lowest cleared row.
+public class HugeEngine extends Rules<ChunkedGrid> {
+    public HugeEngine(int width, int height) {
+        this(width, height, ThreadLocalRandom.current().nextLong());
+    }
+
+    public HugeEngine(int width, int height, long seed) {
+        this(width, height, seed, RandomizerType.SEVEN_BAG);
+    }
+
+    public HugeEngine(int width, int height, long seed, RandomizerType randomizer) {
+        super(new ChunkedGrid(width, height), seed, randomizer);
+    }
+}
@@ -0,0 +1,142 @@
+package game;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+// Turns key press and release events from an InputQueue into actions on the game tick.
+// A press acts at once; holding left or right auto-shifts after a delay (DAS) and then repeats
+// at the auto-repeat rate (ARR), and holding down repeats at the soft drop rate. Timing is
+// counted in logic ticks, so repeats do not depend on the operating system's key repeat.
+public class InputHandler {
+    private static final long X11_REPEAT_GAP = 2_000_000; // Release and press this close are a key repeat
+    private static final long NONE = Long.MIN_VALUE;      // No pending release
+    private static final Action[] ACTIONS = Action.values();
+
+    private final InputQueue queue;
+    private final Predicate<Action> target; // Applies an action, returns whether the piece moved
+    private final boolean[] held = new boolean[ACTIONS.length];
+    private final long[] pendingRelease = new long[ACTIONS.length]; // Stamp, NONE if none
+    private int das = 10;      // Ticks a direction is held before auto-shift starts
+    private int arr = 2;       // Ticks between auto-shift repeats, 0 shifts to the wall at once
+    private int softDrop = 2;  // Ticks between soft drop repeats
+    private Action shift;      // Direction being auto-shifted, null if neither is held
+    private int shiftTicks;
+    private int downTicks;
+    private long lastLatency;  // Nanoseconds from the last press to its action being applied
+    private long maxLatency;
+    private long unshownPress = NONE; // Stamp of the oldest applied press not yet on screen
+
+    public InputHandler(InputQueue queue, Predicate<Action> target) {
+        this.queue = queue;
+        this.target = target;
+        Arrays.fill(pendingRelease, NONE);
+    }
+
+    // Encodes a key event for the queue
+    public static int press(Action action) {
+        return action.ordinal() << 1 | 1;
+    }
+
+    public static int release(Action action) {
+        return action.ordinal() << 1;
+    }
+
+    // Runs one tick of auto-repeat for keys already held, then drains the queue.
+    // Called once per logic tick.
+    public void update() {
+        if (shift != null && ++shiftTicks >= das) {
+            if (arr == 0) {
+                while (target.test(shift)) {} // Straight to the wall
+            } else if ((shiftTicks - das) % arr == 0) {
+                target.test(shift);
+            }
+        }
+        if (held[Action.DOWN.ordinal()] && ++downTicks % softDrop == 0) {
+            target.test(Action.DOWN);
+        }
+
+        for (int code = queue.poll(); code != InputQueue.EMPTY; code = queue.poll()) {
+            Action action = ACTIONS[code >>> 1];
+            if ((code & 1) != 0) {
+                pressed(action, queue.lastStamp());
+            } else {
+                pendingRelease[action.ordinal()] = queue.lastStamp();
+            }
+        }
+        // A release this recent may be the first half of an X11 repeat whose press has not
+        // reached the queue yet, so it waits for the next tick
+        long now = System.nanoTime();
+        for (Action action : ACTIONS) {
+            long stamp = pendingRelease[action.ordinal()];
+            if (stamp != NONE && now - stamp >= X11_REPEAT_GAP) {
+                pendingRelease[action.ordinal()] = NONE;
+                released(action);
+            }
+        }
+    }
+
+    private void pressed(Action action, long stamp) {
+        int index = action.ordinal();
+        if (pendingRelease[index] != NONE) {
+            boolean repeat = stamp - pendingRelease[index] < X11_REPEAT_GAP;
+            pendingRelease[index] = NONE;
+            if (repeat) return; // X11 sends key repeat as a release and a press, ignore both
+            released(action); // A second tap within the tick, the press edge acts again
+        }
+        if (held[index]) return; // Operating system key repeat, timing is ours
+        held[index] = true;
+
+        target.test(action);
+        lastLatency = System.nanoTime() - stamp;
+        maxLatency = Math.max(maxLatency, lastLatency);
+        if (unshownPress == NONE) unshownPress = stamp;
+
+        if (action == Action.LEFT || action == Action.RIGHT) {
+            shift = action;
+            shiftTicks = 0;
+        } else if (action == Action.DOWN) {
+            downTicks = 0;
+        }
+    }
+
+    private void released(Action action) {
+        held[action.ordinal()] = false;
+        if (action == shift) {
+            // Fall back to the other direction if it is still held
+            Action other = action == Action.LEFT ? Action.RIGHT : Action.LEFT;
+            shift = held[other.ordinal()] ? other : null;
+            shiftTicks = 0;
+        }
+    }
+
+    public void setDas(int ticks) {
+        if (ticks < 1) throw new IllegalArgumentException("DAS must be at least one tick: " + ticks);
+        das = ticks;
+    }
+
+    public void setArr(int ticks) {
+        if (ticks < 0) throw new IllegalArgumentException("ARR must not be negative: " + ticks);
+        arr = ticks;
+    }
+
+    public void setSoftDrop(int ticks) {
+        if (ticks < 1) throw new IllegalArgumentException("Soft drop must be at least one tick: " + ticks);
+        softDrop = ticks;
+    }
+
+    // Returns the stamp of the oldest press applied since the last call, or Long.MIN_VALUE if none.
+    // Called once a frame has been shown, to measure press-to-display latency.
+    public long takeUnshownPress() {
+        long stamp = unshownPress;
+        unshownPress = NONE;
+        return stamp;
+    }
+
+    public long getLastLatencyNanos() {
+        return lastLatency;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatency;
+    }
+}
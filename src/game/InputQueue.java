@@ -0,0 +1,56 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded single-producer, single-consumer queue of input events. The AWT event thread offers
+// and the game loop polls; neither side takes a lock. Each event is an int code stamped with
+// the System.nanoTime it was offered at.
+public class InputQueue {
+    public static final int EMPTY = -1; // Returned by poll when there is nothing to read
+
+    private final int[] codes;
+    private final long[] stamps;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // Next event to read, advanced by the consumer
+    private final AtomicLong tail = new AtomicLong(); // Next slot to write, advanced by the producer
+    private long headCache; // Producer's last view of head, saves reading it on every offer
+    private long lastStamp; // Stamp of the event last returned by poll
+
+    // Capacity is rounded up to a power of two
+    public InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        codes = new int[size];
+        stamps = new long[size];
+        mask = size - 1;
+    }
+
+    // Producer side. Returns false and drops the event when the queue is full.
+    public boolean offer(int code, long nanos) {
+        long t = tail.getPlain();
+        if (t - headCache >= codes.length) {
+            headCache = head.getAcquire();
+            if (t - headCache >= codes.length) return false;
+        }
+        int slot = (int) t & mask;
+        codes[slot] = code;
+        stamps[slot] = nanos;
+        tail.setRelease(t + 1); // Publishes the slot to the consumer
+        return true;
+    }
+
+    // Consumer side. Returns the next code, or EMPTY.
+    public int poll() {
+        long h = head.getPlain();
+        if (h >= tail.getAcquire()) return EMPTY;
+        int slot = (int) h & mask;
+        int code = codes[slot];
+        lastStamp = stamps[slot];
+        head.setRelease(h + 1); // Hands the slot back to the producer
+        return code;
+    }
+
+    // Consumer side. The stamp of the event last returned by poll.
+    public long lastStamp() {
+        return lastStamp;
+    }
+}
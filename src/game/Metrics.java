@@ -0,0 +1,144 @@
+package game;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// Frame, paint, tick and input latency timings. Each sample goes into a histogram and, when
+// the matching JFR event is enabled in a recording, into a custom JFR event. The histograms
+// roll over every second; the overlay shows p50/p99/max of the last full second. Used only
+// from the game loop thread.
+public class Metrics {
+    private static final long WINDOW = 1_000_000_000L;
+    private static final String[] NAMES = {"frame", "paint", "tick", "input"};
+    public static final int FRAME = 0;
+    public static final int PAINT = 1;
+    public static final int TICK = 2;
+    public static final int INPUT = 3;
+
+    private static final EventType FRAME_EVENT = EventType.getEventType(FrameEvent.class);
+    private static final EventType PAINT_EVENT = EventType.getEventType(PaintEvent.class);
+    private static final EventType TICK_EVENT = EventType.getEventType(TickEvent.class);
+    private static final EventType INPUT_EVENT = EventType.getEventType(InputLatencyEvent.class);
+
+    private final Histogram[] current = new Histogram[NAMES.length];
+    private final Histogram[] last = new Histogram[NAMES.length]; // The last full window
+    private final String[] lines = new String[NAMES.length];      // Overlay text of the last window
+    private final Font font = new Font("Monospaced", Font.PLAIN, 12);
+    private long windowStart = System.nanoTime();
+
+    public Metrics() {
+        for (int i = 0; i < NAMES.length; i++) {
+            current[i] = new Histogram();
+            last[i] = new Histogram();
+            lines[i] = NAMES[i];
+        }
+    }
+
+    public void recordFrame(long nanos) {
+        current[FRAME].record(nanos);
+        if (FRAME_EVENT.isEnabled()) {
+            FrameEvent event = new FrameEvent();
+            event.nanos = nanos;
+            event.commit();
+        }
+    }
+
+    public void recordPaint(long nanos) {
+        current[PAINT].record(nanos);
+        if (PAINT_EVENT.isEnabled()) {
+            PaintEvent event = new PaintEvent();
+            event.nanos = nanos;
+            event.commit();
+        }
+    }
+
+    public void recordTick(long nanos) {
+        current[TICK].record(nanos);
+        if (TICK_EVENT.isEnabled()) {
+            TickEvent event = new TickEvent();
+            event.nanos = nanos;
+            event.commit();
+        }
+    }
+
+    public void recordInputLatency(long nanos) {
+        current[INPUT].record(nanos);
+        if (INPUT_EVENT.isEnabled()) {
+            InputLatencyEvent event = new InputLatencyEvent();
+            event.nanos = nanos;
+            event.commit();
+        }
+    }
+
+    // Starts a new window once a second has passed, rebuilding the overlay text only then
+    public void roll(long now) {
+        if (now - windowStart < WINDOW) return;
+        windowStart = now;
+        for (int i = 0; i < NAMES.length; i++) {
+            last[i].copyFrom(current[i]);
+            current[i].reset();
+            lines[i] = String.format("%-5s p50 %6.2f  p99 %6.2f  max %6.2f ms  (%d)", NAMES[i],
+                    last[i].percentile(50) / 1e6, last[i].percentile(99) / 1e6, last[i].getMax() / 1e6,
+                    last[i].getCount());
+        }
+    }
+
+    // Histogram of the last full window, indexed by FRAME, PAINT, TICK or INPUT
+    public Histogram getLast(int metric) {
+        return last[metric];
+    }
+
+    public void drawOverlay(Graphics brush, int x, int y) {
+        brush.setFont(font);
+        brush.setColor(Color.GREEN);
+        for (int i = 0; i < lines.length; i++) {
+            brush.drawString(lines[i], x, y + i * 14);
+        }
+    }
+
+    @Name("game.Frame")
+    @Label("Frame")
+    @Category("Tetris")
+    static class FrameEvent extends Event {
+        @Label("Frame Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+
+    @Name("game.Paint")
+    @Label("Board Paint")
+    @Category("Tetris")
+    static class PaintEvent extends Event {
+        @Label("Paint Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+
+    @Name("game.Tick")
+    @Label("Logic Tick")
+    @Category("Tetris")
+    static class TickEvent extends Event {
+        @Label("Tick Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+
+    @Name("game.InputLatency")
+    @Label("Input Latency")
+    @Description("Time from a key press to the first frame shown after its action was applied")
+    @Category("Tetris")
+    static class InputLatencyEvent extends Event {
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+}
@@ -0,0 +1,245 @@
+package game;
+
+import java.util.Arrays;
+
+// Finds every placement a piece can reach with the inputs Engine.step accepts: left, right,
+// rotate clockwise and soft drop, so tucks under overhangs and spins into slots are found as
+// well as straight drops. A breadth-first search runs over (rotation, col, row) states with
+// a visited bitset; every state the piece cannot soft drop from is a placement, and states
+// leaving the same cells occupied count once. Collisions are worked out for every position
+// up front, 64 columns at a time, so each step of the search tests a single bit. Each
+// placement comes with the shortest input sequence that reaches it, ending in the HARD_DROP
+// that locks it. Gravity is not modelled.
+// All buffers are kept between calls, so a generator allocates only when the board grows;
+// it is not safe to share between threads.
+public class MoveGenerator {
+    private static final int PAD = 3; // Piece cells reach at most 3 cells either side of the origin
+    private static final Action[] MOVES = {Action.LEFT, Action.RIGHT, Action.ROTATE, Action.DOWN};
+    private static final int[][] CANONICAL = buildCanonicalRotations();
+
+    private long[] board = new long[0]; // Grid rows, bit col set when occupied, row 0 at the top
+    private int width;
+    private int height;
+    private int stride;     // States per rotation and row
+    private int perRotation;
+    private long[] fitMap = new long[0]; // By rotation and top row, bit left set when the piece fits
+    private long[] visited = new long[0];
+    private long[] landed = new long[0]; // Placements found, by canonical rotation, top and left
+    private int[] queue = new int[0];    // States in search order, also indexed by discovery
+    private int[] parent = new int[0];   // Discovery index of the state each state was reached from
+    private byte[] move = new byte[0];   // Index into MOVES of the input that reached each state
+    private TetrinomeType type;
+
+    // Found placements, in search order
+    private int count;
+    private int[] placements = new int[0]; // Discovery index of each placement's state
+    private int[] depths = new int[0];     // Inputs before the final drop
+
+    // Searches from the active piece of an engine
+    public int generate(Engine engine) {
+        if (engine.getPieceType() == null) {
+            count = 0;
+            return 0;
+        }
+        setBoardSize(engine.getWidth(), engine.getHeight());
+        for (int row = 0; row < height; row++) {
+            board[row] = engine.getRowBits(row);
+        }
+        return search(engine.getPieceType(), engine.getPieceRotation(), engine.getPieceCol(), engine.getPieceRow());
+    }
+
+    // Searches from a piece state on a board of rows, row 0 at the top. Returns the number
+    // of placements, 0 if the piece does not fit where it starts.
+    public int generate(long[] rows, int width, TetrinomeType type, int rotation, int col, int row) {
+        setBoardSize(width, rows.length);
+        System.arraycopy(rows, 0, board, 0, rows.length);
+        return search(type, rotation, col, row);
+    }
+
+    private void setBoardSize(int width, int height) {
+        if (width < 1 || width > Long.SIZE) {
+            throw new IllegalArgumentException("Board width must be between 1 and " + Long.SIZE + ": " + width);
+        }
+        this.width = width;
+        this.height = height;
+        this.stride = width + 2 * PAD;
+        this.perRotation = stride * (height + 2 * PAD);
+        int states = TetrinomeType.ROTATIONS * perRotation;
+        if (board.length < height) {
+            board = new long[height];
+            fitMap = new long[TetrinomeType.ROTATIONS * height];
+        }
+        if (queue.length < states) {
+            visited = new long[(states + 63) >>> 6];
+            landed = new long[(states + 63) >>> 6];
+            queue = new int[states];
+            parent = new int[states];
+            move = new byte[states];
+            placements = new int[states];
+            depths = new int[states];
+        }
+    }
+
+    private int search(TetrinomeType type, int rotation, int col, int row) {
+        this.type = type;
+        int words = (TetrinomeType.ROTATIONS * perRotation + 63) >>> 6;
+        Arrays.fill(visited, 0, words, 0);
+        Arrays.fill(landed, 0, words, 0);
+        count = 0;
+        buildFitMap();
+        if (!fits(rotation, col, row)) return 0;
+
+        int tail = 0;
+        int start = state(rotation, col, row);
+        visited[start >>> 6] |= 1L << start;
+        queue[tail] = start;
+        parent[tail] = -1;
+        depths[tail] = 0;
+        tail++;
+
+        for (int head = 0; head < tail; head++) {
+            int s = queue[head];
+            int r = s / perRotation;
+            int y = (s % perRotation) / stride - PAD;
+            int x = s % stride - PAD;
+
+            if (!fits(r, x, y + 1)) {
+                // Cells are what matter, rotations with the same shape land on the same key
+                int canonical = CANONICAL[type.ordinal()][r];
+                int key = state(canonical, x + type.getMinX(r) - type.getMinX(canonical),
+                        y + type.getMinY(r) - type.getMinY(canonical));
+                if ((landed[key >>> 6] & (1L << key)) == 0) {
+                    landed[key >>> 6] |= 1L << key;
+                    placements[count++] = head;
+                }
+            }
+
+            for (int m = 0; m < MOVES.length; m++) {
+                int nr = r;
+                int nx = x;
+                int ny = y;
+                switch (MOVES[m]) {
+                    case LEFT: nx--; break;
+                    case RIGHT: nx++; break;
+                    case ROTATE: nr = (r + 1) & (TetrinomeType.ROTATIONS - 1); break;
+                    default: ny++; break;
+                }
+                if (!fits(nr, nx, ny)) continue;
+                int next = state(nr, nx, ny);
+                if ((visited[next >>> 6] & (1L << next)) != 0) continue;
+                visited[next >>> 6] |= 1L << next;
+                queue[tail] = next;
+                parent[tail] = head;
+                move[tail] = (byte) m;
+                depths[tail] = depths[head] + 1;
+                tail++;
+            }
+        }
+        return count;
+    }
+
+    private int state(int rotation, int col, int row) {
+        return rotation * perRotation + (row + PAD) * stride + col + PAD;
+    }
+
+    // For each rotation and top row, marks every left column where the piece fits: a piece
+    // cell b columns from its left edge is blocked by the row's occupancy shifted right by b
+    private void buildFitMap() {
+        for (int rotation = 0; rotation < TetrinomeType.ROTATIONS; rotation++) {
+            long[] masks = type.getRowMasks(rotation);
+            int pieceWidth = type.getMaxX(rotation) - type.getMinX(rotation) + 1;
+            long lefts = width - pieceWidth + 1 == Long.SIZE ? -1L : (1L << (width - pieceWidth + 1)) - 1;
+            int base = rotation * height;
+            for (int top = 0; top < height; top++) {
+                if (top + masks.length > height) {
+                    fitMap[base + top] = 0;
+                    continue;
+                }
+                long blocked = 0;
+                for (int i = 0; i < masks.length; i++) {
+                    long rowBits = board[top + i];
+                    for (long m = masks[i]; m != 0; m &= m - 1) {
+                        blocked |= rowBits >>> Long.numberOfTrailingZeros(m);
+                    }
+                }
+                fitMap[base + top] = ~blocked & lefts;
+            }
+        }
+    }
+
+    private boolean fits(int rotation, int col, int row) {
+        int left = col + type.getMinX(rotation);
+        int top = row + type.getMinY(rotation);
+        if (left < 0 || left >= width || top < 0 || top >= height) return false;
+        return (fitMap[rotation * height + top] & (1L << left)) != 0;
+    }
+
+    // Placements found by the last search
+    public int getCount() {
+        return count;
+    }
+
+    public int getRotation(int placement) {
+        return queue[placements[placement]] / perRotation;
+    }
+
+    public int getCol(int placement) {
+        return queue[placements[placement]] % stride - PAD;
+    }
+
+    public int getRow(int placement) {
+        return (queue[placements[placement]] % perRotation) / stride - PAD;
+    }
+
+    // Inputs in the placement's sequence, including the final HARD_DROP
+    public int getPathLength(int placement) {
+        int index = placements[placement];
+        return depths[index] - trailingDrops(index) + 1;
+    }
+
+    // Writes the placement's input sequence into out and returns its length. Soft drops at
+    // the end of the shortest path are folded into the HARD_DROP, which lands the same way.
+    public int getPath(int placement, Action[] out) {
+        int index = placements[placement];
+        int length = getPathLength(placement);
+        if (out.length < length) {
+            throw new IllegalArgumentException("Path of " + length + " inputs does not fit in " + out.length);
+        }
+        out[length - 1] = Action.HARD_DROP;
+        int skip = trailingDrops(index);
+        for (int i = length - 2; index > 0; index = parent[index]) {
+            if (skip > 0) {
+                skip--;
+            } else {
+                out[i--] = MOVES[move[index]];
+            }
+        }
+        return length;
+    }
+
+    // Soft drops at the end of the path to a state
+    private int trailingDrops(int index) {
+        int drops = 0;
+        while (index > 0 && MOVES[move[index]] == Action.DOWN) {
+            drops++;
+            index = parent[index];
+        }
+        return drops;
+    }
+
+    // For each type and rotation, the first rotation with the same row masks
+    private static int[][] buildCanonicalRotations() {
+        TetrinomeType[] types = TetrinomeType.values();
+        int[][] canonical = new int[types.length][TetrinomeType.ROTATIONS];
+        for (TetrinomeType type : types) {
+            for (int rotation = 0; rotation < TetrinomeType.ROTATIONS; rotation++) {
+                int first = 0;
+                while (!Arrays.equals(type.getRowMasks(first), type.getRowMasks(rotation))) {
+                    first++;
+                }
+                canonical[type.ordinal()][rotation] = first;
+            }
+        }
+        return canonical;
+    }
+}
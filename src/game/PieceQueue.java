@@ -0,0 +1,126 @@
+package game;
+
+// Upcoming pieces, held in a fixed ring and dealt from a Randomizer only when a piece is
+// taken or previewed. Peeking is an array read once the piece has been dealt, so bots can
+// look several pieces ahead every node without allocating. The randomizer type, its seed
+// and the number of pieces taken pin down the whole sequence, which is what replays and
+// snapshots rely on. Pieces are numbered from the seed, and the ring also keeps the pieces
+// most recently taken, so seeking back a few pieces for an undo deals nothing.
+public class PieceQueue {
+    public static final int CAPACITY = 16; // Upcoming pieces that can be previewed, a power of two
+
+    private TetrinomeType[] ring = new TetrinomeType[CAPACITY]; // Piece n in slot n & mask
+    private int mask = CAPACITY - 1;
+    private RandomizerType type;
+    private long seed;
+    private Randomizer randomizer;
+    private long taken; // Pieces taken since the seed, dealing them again restores the randomizer
+    private long dealt; // Pieces dealt by the randomizer, the ring holds the ones before this
+    private long kept;  // First piece the ring can hold, pieces before a restore were never dealt into it
+
+    public PieceQueue(RandomizerType type, long seed) {
+        this.type = type;
+        this.seed = seed;
+        this.randomizer = type.create(seed);
+    }
+
+    // Takes the next piece
+    public TetrinomeType next() {
+        if (dealt == taken) {
+            deal();
+        }
+        return ring[(int) taken++ & mask];
+    }
+
+    // Returns an upcoming piece without taking it, 0 being the next one
+    public TetrinomeType peek(int index) {
+        if (index < 0 || index >= CAPACITY) {
+            throw new IndexOutOfBoundsException("Preview index out of range: " + index);
+        }
+        while (dealt <= taken + index) {
+            deal();
+        }
+        return ring[(int) (taken + index) & mask];
+    }
+
+    private void deal() {
+        ring[(int) dealt++ & mask] = randomizer.next();
+    }
+
+    // Keeps at least the given number of taken pieces in the ring on top of the upcoming
+    // ones, so seek can go back that far without dealing again
+    void retain(int pieces) {
+        if (pieces < 0 || pieces > 1 << 24) {
+            throw new IllegalArgumentException("Pieces to retain must be between 0 and 2^24: " + pieces);
+        }
+        int length = Integer.highestOneBit(CAPACITY + pieces - 1) << 1;
+        if (length <= ring.length) return;
+        TetrinomeType[] grown = new TetrinomeType[length];
+        for (long n = Math.max(kept, dealt - ring.length); n < dealt; n++) {
+            grown[(int) n & (length - 1)] = ring[(int) n & mask];
+        }
+        ring = grown;
+        mask = length - 1;
+    }
+
+    // Goes back or forward to the point where the given number of pieces had been taken.
+    // Pieces still in the ring are taken again as they were, older ones are dealt again
+    // from the seed.
+    void seek(long taken) {
+        if (taken < 0) throw new IllegalArgumentException("Pieces taken cannot be negative: " + taken);
+        if (taken <= dealt && taken >= kept && dealt - taken <= ring.length) {
+            this.taken = taken;
+            return;
+        }
+        if (taken < dealt) {
+            restore(type, seed, taken);
+            return;
+        }
+        while (dealt < taken) {
+            deal();
+        }
+        this.taken = taken;
+    }
+
+    // Rewinds to a randomizer and seed and deals the pieces already taken again, so the
+    // queue continues exactly as the original game did
+    void restore(RandomizerType type, long seed, long taken) {
+        this.type = type;
+        this.seed = seed;
+        this.randomizer = type.create(seed);
+        for (long i = 0; i < taken; i++) {
+            randomizer.next();
+        }
+        this.taken = taken;
+        this.dealt = taken;
+        this.kept = taken;
+    }
+
+    // Replaces the upcoming pieces with count known ones, later pieces come from the
+    // randomizer as it stands
+    void restore(TetrinomeType[] upcoming, int count) {
+        if (count > CAPACITY) throw new IllegalArgumentException("Too many upcoming pieces: " + count);
+        for (int i = 0; i < count; i++) {
+            ring[(int) (taken + i) & mask] = upcoming[i];
+        }
+        dealt = taken + count;
+        kept = taken;
+    }
+
+    // Pieces dealt but not taken yet, peek reads them without dealing more
+    int size() {
+        return (int) (dealt - taken);
+    }
+
+    long getTaken() {
+        return taken;
+    }
+
+    public RandomizerType getType() {
+        return type;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -11,18 +11,26 @@ USAGE: You are intended to instantiate this class with a set of points that
        rotating that shape. In defining the shape, the relative positions
        of the points you provide are used, in other words: {(0,1),(1,1),(1,0)}
        is the same shape as {(9,10),(10,10),(10,9)}.
+       Position and rotation change only through the setters, so the
+       transformed points can be kept until one of them actually changes;
+       getPoints and contains are cheap to call every frame.
 NOTE: You don't need to worry about the "magic math" details.
 
 */
 
 class Polygon {
   private Point[] shape;   // An array of points.
-  public Point position;   // The offset mentioned above.
-  public double rotation; // Zero degrees is due east.
+  private Point position;  // The offset mentioned above.
+  private double rotation; // Zero degrees is due east.
+  private final Point center; // Centroid of the shape, which never changes.
+  private final double[] xs; // Transformed points, valid while stale is false.
+  private final double[] ys;
+  private double minX, minY, maxX, maxY; // Bounding box of the transformed points.
+  private boolean stale = true;
   
   public Polygon(Point[] inShape, Point inPosition, double inRotation) {
     shape = inShape;
-    position = inPosition;
+    position = inPosition.clone();
     rotation = inRotation;
     
     // First, we find the shape's top-most left-most boundary, its origin.
@@ -37,43 +45,94 @@ class Polygon {
       p.x -= origin.x;
       p.y -= origin.y;
     }
+    center = findCenter();
+    xs = new double[shape.length];
+    ys = new double[shape.length];
   }
   
   // "getPoints" applies the rotation and offset to the shape of the polygon.
+  // The points are new copies of the cached ones, callers may keep or change them.
   public Point[] getPoints() {
-    Point center = findCenter();
-    //Point center = shape[0].clone();
-    Point[] points = new Point[shape.length];
-    for (int i = 0; i < shape.length; i++) {
-//    for (Point p : shape) {
-      Point p = shape[i];
-      double x = ((p.x-center.x) * Math.cos(Math.toRadians(rotation)))
-               - ((p.y-center.y) * Math.sin(Math.toRadians(rotation)))
-               + center.x/2 + position.x;
-      double y = ((p.x-center.x) * Math.sin(Math.toRadians(rotation)))
-               + ((p.y-center.y) * Math.cos(Math.toRadians(rotation)))
-               + center.y/2 + position.y;
-      points[i] = new Point(x,y);
+    refresh();
+    Point[] points = new Point[xs.length];
+    for (int i = 0; i < xs.length; i++) {
+      points[i] = new Point(xs[i], ys[i]);
     }
     return points;
   }
   
   // "contains" implements some magical math (i.e. the ray-casting algorithm).
   public boolean contains(Point point) {
-    Point[] points = getPoints();
-    double crossingNumber = 0;
-    for (int i = 0, j = 1; i < shape.length; i++, j=(j+1)%shape.length) {
-      if ((((points[i].x < point.x) && (point.x <= points[j].x)) ||
-           ((points[j].x < point.x) && (point.x <= points[i].x))) &&
-          (point.y > points[i].y + (points[j].y-points[i].y)/
-           (points[j].x - points[i].x) * (point.x - points[i].x))) {
-        crossingNumber++;
-      }
+    return contains(point.x, point.y);
+  }
+  
+  public boolean contains(double px, double py) {
+    refresh();
+    return inside(px, py);
+  }
+  
+  // Tests many points against this polygon at once, results[i] is set for points[i].
+  // Returns how many of them are inside.
+  public int contains(Point[] points, boolean[] results) {
+    if (results.length < points.length) {
+      throw new IllegalArgumentException("Results array holds " + results.length + " of " + points.length + " points");
+    }
+    refresh();
+    int count = 0;
+    for (int i = 0; i < points.length; i++) {
+      results[i] = inside(points[i].x, points[i].y);
+      if (results[i]) count++;
     }
-    return crossingNumber%2 == 1;
+    return count;
   }
   
-  public void rotate(int degrees) {rotation = (rotation+degrees)%360;}
+  public Point getPosition() {
+    return position.clone();
+  }
+  
+  public double getRotation() {
+    return rotation;
+  }
+  
+  public void setPosition(double x, double y) {
+    if (x == position.x && y == position.y) return;
+    position.x = x;
+    position.y = y;
+    stale = true;
+  }
+  
+  public void setPosition(Point p) {
+    setPosition(p.x, p.y);
+  }
+  
+  public void move(double dx, double dy) {
+    setPosition(position.x + dx, position.y + dy);
+  }
+  
+  public void setRotation(double degrees) {
+    if (degrees == rotation) return;
+    rotation = degrees;
+    stale = true;
+  }
+  
+  public void rotate(int degrees) {setRotation((rotation+degrees)%360);}
+  
+  // Subclasses that place their points some other way override transform and call
+  // invalidate whenever the result would change.
+  protected void invalidate() {
+    stale = true;
+  }
+  
+  // Fills in the transformed points, the sine and cosine are worked out once per call.
+  protected void transform(double[] outX, double[] outY) {
+    double cos = Math.cos(Math.toRadians(rotation));
+    double sin = Math.sin(Math.toRadians(rotation));
+    for (int i = 0; i < shape.length; i++) {
+      Point p = shape[i];
+      outX[i] = ((p.x-center.x) * cos) - ((p.y-center.y) * sin) + center.x/2 + position.x;
+      outY[i] = ((p.x-center.x) * sin) + ((p.y-center.y) * cos) + center.y/2 + position.y;
+    }
+  }
   
   /*
   The following methods are private access restricted because, as this access
@@ -81,6 +140,36 @@ class Polygon {
   methods in this class that are not private. They can't be used anywhere else.
   */
   
+  // Recomputes the transformed points and their bounding box if they are out of date.
+  private void refresh() {
+    if (!stale) return;
+    transform(xs, ys);
+    minX = maxX = xs[0];
+    minY = maxY = ys[0];
+    for (int i = 1; i < xs.length; i++) {
+      minX = Math.min(minX, xs[i]);
+      maxX = Math.max(maxX, xs[i]);
+      minY = Math.min(minY, ys[i]);
+      maxY = Math.max(maxY, ys[i]);
+    }
+    stale = false;
+  }
+  
+  // Ray casting against the cached points, points outside the bounding box never cross.
+  private boolean inside(double px, double py) {
+    if (px <= minX || px > maxX || py <= minY) return false;
+    boolean in = false;
+    for (int i = 0, j = 1; i < xs.length; i++, j=(j+1)%xs.length) {
+      if ((((xs[i] < px) && (px <= xs[j])) ||
+           ((xs[j] < px) && (px <= xs[i]))) &&
+          (py > ys[i] + (ys[j]-ys[i])/
+           (xs[j] - xs[i]) * (px - xs[i]))) {
+        in = !in;
+      }
+    }
+    return in;
+  }
+  
   // "findArea" implements some more magic math.
   private double findArea() {
     double sum = 0;
@@ -0,0 +1,96 @@
+package game;
+
+import java.util.SplittableRandom;
+
+// Source of the piece sequence. A randomizer is driven entirely by its SplittableRandom,
+// so the same type and seed always deal the same pieces; RandomizerType creates them.
+public interface Randomizer {
+    TetrinomeType next();
+
+    // Deals shuffled sets holding each piece copies times: 1 is the 7-bag, 2 the 14-bag
+    final class Bag implements Randomizer {
+        private static final TetrinomeType[] TYPES = TetrinomeType.values();
+
+        private final SplittableRandom random;
+        private final TetrinomeType[] bag;
+        private int next; // Index of the next piece in bag, bag.length when it is used up
+
+        Bag(SplittableRandom random, int copies) {
+            this.random = random;
+            this.bag = new TetrinomeType[TYPES.length * copies];
+            this.next = bag.length;
+        }
+
+        @Override
+        public TetrinomeType next() {
+            if (next == bag.length) {
+                // Inside-out Fisher-Yates shuffle
+                for (int i = 0; i < bag.length; i++) {
+                    int j = random.nextInt(i + 1);
+                    bag[i] = bag[j];
+                    bag[j] = TYPES[i % TYPES.length];
+                }
+                next = 0;
+            }
+            return bag[next++];
+        }
+    }
+
+    // TGM-style history: a piece is rerolled up to a few times while it matches one of the
+    // last four dealt, which makes droughts and repeats rare without fixing the order. The
+    // first piece is never S, Z or O.
+    final class History implements Randomizer {
+        private static final TetrinomeType[] TYPES = TetrinomeType.values();
+        private static final TetrinomeType[] FIRST = {TetrinomeType.I, TetrinomeType.J, TetrinomeType.L, TetrinomeType.T};
+        private static final int ROLLS = 6;
+
+        private final SplittableRandom random;
+        private final TetrinomeType[] history = {TetrinomeType.Z, TetrinomeType.S, TetrinomeType.S, TetrinomeType.Z};
+        private int oldest; // Slot in history replaced by the next piece
+        private boolean first = true;
+
+        History(SplittableRandom random) {
+            this.random = random;
+        }
+
+        @Override
+        public TetrinomeType next() {
+            TetrinomeType piece;
+            if (first) {
+                first = false;
+                piece = FIRST[random.nextInt(FIRST.length)];
+            } else {
+                piece = TYPES[random.nextInt(TYPES.length)];
+                for (int roll = 1; roll < ROLLS && inHistory(piece); roll++) {
+                    piece = TYPES[random.nextInt(TYPES.length)];
+                }
+            }
+            history[oldest] = piece;
+            oldest = (oldest + 1) & (history.length - 1);
+            return piece;
+        }
+
+        private boolean inHistory(TetrinomeType piece) {
+            for (TetrinomeType type : history) {
+                if (type == piece) return true;
+            }
+            return false;
+        }
+    }
+
+    // Every piece equally likely every time
+    final class Uniform implements Randomizer {
+        private static final TetrinomeType[] TYPES = TetrinomeType.values();
+
+        private final SplittableRandom random;
+
+        Uniform(SplittableRandom random) {
+            this.random = random;
+        }
+
+        @Override
+        public TetrinomeType next() {
+            return TYPES[random.nextInt(TYPES.length)];
+        }
+    }
+}
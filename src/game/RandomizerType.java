@@ -0,0 +1,34 @@
+package game;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// The piece randomizers a game can use. Replays and snapshots store the ordinal, so new
+// types go at the end.
+public enum RandomizerType {
+    SEVEN_BAG,
+    FOURTEEN_BAG,
+    HISTORY,
+    RANDOM;
+
+    // A randomizer of this type that deals the same pieces for the same seed
+    public Randomizer create(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        switch (this) {
+            case SEVEN_BAG: return new Randomizer.Bag(random, 1);
+            case FOURTEEN_BAG: return new Randomizer.Bag(random, 2);
+            case HISTORY: return new Randomizer.History(random);
+            default: return new Randomizer.Uniform(random);
+        }
+    }
+
+    // Parses a name such as "seven-bag" or "HISTORY"
+    public static RandomizerType parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown randomizer " + name + ", expected one of "
+                    + Arrays.toString(values()));
+        }
+    }
+}
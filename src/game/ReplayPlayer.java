@@ -0,0 +1,131 @@
+package game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/*
+CLASS: ReplayPlayer
+DESCRIPTION: Re-simulates logs written by ReplayRecorder on a headless Engine
+             as fast as the rules run, reading the log through a memory-mapped
+             file. A replay is verified when the re-simulated line and piece
+             counts match the ones recorded at the end of the log.
+USAGE: java game.ReplayPlayer replay1.bin replay2.bin ...
+*/
+public class ReplayPlayer {
+    // Outcome of a re-simulated game
+    public static final class Result {
+        public final Path path;
+        public final long ticks;
+        public final int lines;
+        public final int pieces;
+        public final boolean verified; // Counts match the ones recorded in the log
+
+        Result(Path path, long ticks, int lines, int pieces, boolean verified) {
+            this.path = path;
+            this.ticks = ticks;
+            this.lines = lines;
+            this.pieces = pieces;
+            this.verified = verified;
+        }
+    }
+
+    private ReplayPlayer() {}
+
+    public static Result play(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return play(path, buffer);
+        }
+    }
+
+    public static Result play(Path path, ByteBuffer in) {
+        return play(path, in, null);
+    }
+
+    // Re-simulates a log, handing the engine to onTick after every logic tick when it is not null
+    public static Result play(Path path, ByteBuffer in, Consumer<Engine> onTick) {
+        if (in.getInt() != ReplayRecorder.MAGIC) {
+            throw new IllegalArgumentException("Not a replay log: " + path);
+        }
+        int version = in.get();
+        if (version != ReplayRecorder.VERSION) {
+            throw new IllegalArgumentException("Unsupported replay version " + version + ": " + path);
+        }
+        int width = (int) readVarint(in);
+        int height = (int) readVarint(in);
+        long seed = in.getLong();
+        Engine engine = new Engine(width, height, seed, RandomizerType.values()[in.get()]);
+        engine.setGravity((int) readVarint(in));
+        engine.setLockDelay((int) readVarint(in));
+        long tick = readVarint(in);
+        runUntil(engine, tick, onTick);
+
+        Action[] actions = Action.values();
+        while (true) {
+            long record = readVarint(in);
+            tick += record >>> ReplayRecorder.ACTION_BITS;
+            int code = (int) (record & ReplayRecorder.END);
+            runUntil(engine, tick, onTick);
+            if (code == ReplayRecorder.END) break;
+            engine.step(actions[code]);
+        }
+
+        int lines = (int) readVarint(in);
+        int pieces = (int) readVarint(in);
+        boolean verified = lines == engine.getLinesCleared() && pieces == engine.getPiecesPlaced();
+        return new Result(path, engine.getTicks(), engine.getLinesCleared(), engine.getPiecesPlaced(), verified);
+    }
+
+    // Runs logic ticks until the engine reaches the given tick or the game ends
+    private static void runUntil(Engine engine, long tick, Consumer<Engine> onTick) {
+        while (engine.getTicks() < tick && !engine.isGameOver()) {
+            engine.tick();
+            if (onTick != null) onTick.accept(engine);
+        }
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    public static void main(String[] args) {
+        List<Path> paths = Arrays.stream(args).map(Paths::get).collect(Collectors.toList());
+        long start = System.nanoTime();
+        List<Result> results = paths.parallelStream().map(path -> {
+            try {
+                return play(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).collect(Collectors.toList());
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long ticks = 0;
+        int failed = 0;
+        for (Result result : results) {
+            ticks += result.ticks;
+            if (!result.verified) {
+                failed++;
+                System.out.println("MISMATCH " + result.path + " lines " + result.lines + " pieces " + result.pieces);
+            }
+        }
+        System.out.printf("%d replays, %d mismatched, %.0f replays/s, %.0f ticks/s%n",
+                results.size(), failed, results.size() / seconds, ticks / seconds);
+        if (failed > 0) System.exit(1);
+    }
+}
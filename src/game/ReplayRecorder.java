@@ -0,0 +1,88 @@
+package game;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/*
+CLASS: ReplayRecorder
+DESCRIPTION: Writes a game's inputs to a compact binary log. The header holds
+             the board size, randomizer seed and type, gravity and lock delay,
+             which together with the inputs reproduce the game exactly. Each
+             input is one varint: the ticks since the previous input shifted
+             left by three, with the action ordinal in the low bits. The log ends
+             with an END record followed by the final line and piece counts.
+*/
+public class ReplayRecorder implements AutoCloseable {
+    static final int MAGIC = 0x5452504C; // "TRPL"
+    static final int VERSION = 3; // 3: randomizer type after the seed, shuffles use SplittableRandom
+    static final int ACTION_BITS = 3;
+    static final int END = (1 << ACTION_BITS) - 1; // Action code that marks the end of the log
+
+    private final DataOutputStream out;
+    private final Engine engine;
+    private long lastTick;
+    private boolean closed;
+
+    public ReplayRecorder(Path path, Engine engine) throws IOException {
+        this(Files.newOutputStream(path), engine);
+    }
+
+    public ReplayRecorder(OutputStream stream, Engine engine) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(stream));
+        this.engine = engine;
+        this.lastTick = engine.getTicks();
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeVarint(engine.getWidth());
+        writeVarint(engine.getHeight());
+        out.writeLong(engine.getSeed());
+        out.writeByte(engine.getRandomizerType().ordinal());
+        writeVarint(engine.getGravity());
+        writeVarint(engine.getLockDelay());
+        writeVarint(lastTick);
+    }
+
+    // Records an input applied after the engine's current tick
+    public synchronized void record(Action action) {
+        if (closed) return;
+        try {
+            write(engine.getTicks(), action.ordinal());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Writes the END record and the final counts, later calls do nothing
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            write(engine.getTicks(), END);
+            writeVarint(engine.getLinesCleared());
+            writeVarint(engine.getPiecesPlaced());
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(long tick, int code) throws IOException {
+        writeVarint(((tick - lastTick) << ACTION_BITS) | code);
+        lastTick = tick;
+    }
+
+    // Seven bits per byte, high bit set on every byte but the last
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,316 @@
+package game;
+
+import java.util.Arrays;
+
+// Grid of a board at most 64 wide, one long per row with bit col set when the cell is
+// occupied. A piece is tested or placed with one AND or OR per piece row. The rows are a ring,
+// so a line clear or a garbage push can move the whole stack by rotating it instead of
+// copying. Rows changed since the last markClean are tracked for renderers, and rows changed
+// since the last takeChanges for the undo history.
+public final class RowGrid implements Grid {
+    private final int width;    // Width of the board in cells
+    private final int height;   // Height of the board in cells
+    private final long[] rows;  // Ring of row bitmasks, bit col set when the cell is occupied
+    private int base;           // Slot in rows holding the top grid row
+    private int stackTop;       // No occupied cells above this grid row
+    private final int[] columnTops; // Skyline: highest occupied row of each column, height when empty
+    private final long fullRow; // Mask of a row with every cell occupied
+    private long hash;          // Zobrist hash of the grid, kept up to date by every change
+    private int dirtyTop;       // First row changed since the last markClean
+    private int dirtyBottom;    // Last row changed since the last markClean, no rows when below dirtyTop
+    private int changedTop;     // First row changed since the last takeChanges
+    private int changedBottom;  // Last row changed since the last takeChanges, no rows when below changedTop
+    private long changeMark;    // Counts takeChanges calls
+
+    public RowGrid(int width, int height) {
+        if (width < 1 || width > Long.SIZE) {
+            throw new IllegalArgumentException("Board width must be between 1 and " + Long.SIZE + ": " + width);
+        }
+        if (height < 1) {
+            throw new IllegalArgumentException("Board height must be positive: " + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.rows = new long[height];
+        this.stackTop = height;
+        this.columnTops = new int[width];
+        Arrays.fill(columnTops, height);
+        this.fullRow = width == Long.SIZE ? -1L : (1L << width) - 1;
+        this.dirtyBottom = height - 1;
+        this.changedBottom = height - 1;
+    }
+
+    // Checks a piece at a grid position by ANDing its row masks against the grid rows
+    @Override
+    public boolean fits(TetrinomeType type, int rotation, int col, int row) {
+        int left = col + type.getMinX(rotation);
+        int top = row + type.getMinY(rotation);
+
+        // Out of bounds never fits
+        if (left < 0 || col + type.getMaxX(rotation) >= width || top < 0 || row + type.getMaxY(rotation) >= height) {
+            return false;
+        }
+
+        long[] masks = type.getRowMasks(rotation);
+        for (int i = 0; i < masks.length; i++) {
+            if ((rows[slot(top + i)] & (masks[i] << left)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void place(TetrinomeType type, int rotation, int col, int row) {
+        int left = col + type.getMinX(rotation);
+        int top = row + type.getMinY(rotation);
+        long[] masks = type.getRowMasks(rotation);
+        for (int i = 0; i < masks.length; i++) {
+            int r = top + i;
+            if (r >= 0 && r < height && left >= 0) {
+                int slot = slot(r);
+                long added = (masks[i] << left) & fullRow & ~rows[slot];
+                rows[slot] |= added;
+                if (added != 0 && r < stackTop) stackTop = r;
+                for (long bits = added; bits != 0; bits &= bits - 1) {
+                    int c = Long.numberOfTrailingZeros(bits);
+                    if (r < columnTops[c]) columnTops[c] = r;
+                }
+                hash ^= Zobrist.row(r, added);
+                markDirty(r, r);
+            }
+        }
+    }
+
+    @Override
+    public int clearLines(int[] clearedRows) {
+        // Find the complete rows, only rows at or below the top of the stack can be complete
+        int cleared = 0;
+        int lowest = -1;
+        int highest = -1;
+        for (int row = height - 1; row >= stackTop; row--) {
+            if (rows[slot(row)] == fullRow) {
+                if (clearedRows != null && cleared < clearedRows.length) clearedRows[cleared] = row;
+                if (lowest < 0) lowest = row;
+                highest = row;
+                cleared++;
+            }
+        }
+        if (cleared == 0) return 0;
+
+        // Only stack rows down to the lowest complete row change, rehash just those
+        int first = stackTop;
+        hash ^= rowsHash(first, lowest);
+
+        // One bottom-up pass packs the rows between the highest and lowest complete rows
+        int write = lowest;
+        for (int read = lowest; read >= highest; read--) {
+            long bits = rows[slot(read)];
+            if (bits != fullRow) rows[slot(write--)] = bits;
+        }
+
+        // The stack above the highest complete row drops by cleared rows. Either copy it down,
+        // or rotate the ring so it drops for free and copy the rows below it back up instead.
+        int above = highest - stackTop;
+        int below = height - 1 - write;
+        if (above <= below) {
+            for (int row = highest - 1; row >= stackTop; row--) {
+                rows[slot(row + cleared)] = rows[slot(row)];
+            }
+            for (int row = stackTop; row < stackTop + cleared; row++) {
+                rows[slot(row)] = 0;
+            }
+        } else {
+            base = slot(height - cleared);
+            for (int row = write + 1; row < height; row++) {
+                rows[slot(row)] = rows[slot(row + cleared)];
+            }
+            for (int row = 0; row < cleared; row++) {
+                rows[slot(row)] = 0; // Rows that wrapped around from the bottom
+            }
+        }
+
+        stackTop += cleared;
+        updateSkyline();
+        hash ^= rowsHash(first, lowest);
+        markDirty(first, lowest);
+        return cleared;
+    }
+
+    // Rotating the ring moves the stack up for free
+    @Override
+    public boolean addGarbage(int count, int holeCol) {
+        if (count > height || stackTop < count) return false;
+
+        hash ^= rowsHash(stackTop, height - 1);
+        base = slot(count); // The top count rows, all empty, wrap around to the bottom
+        long garbage = fullRow & ~(1L << holeCol);
+        for (int row = height - count; row < height; row++) {
+            rows[slot(row)] = garbage;
+        }
+        stackTop -= count;
+        hash ^= rowsHash(stackTop, height - 1);
+        updateSkyline();
+        markDirty(stackTop, height - 1);
+        return true;
+    }
+
+    // Replaces every row, bit col of grid[row] set when the cell is occupied
+    void restore(long[] grid) {
+        base = 0;
+        stackTop = height;
+        for (int r = height - 1; r >= 0; r--) {
+            rows[r] = grid[r] & fullRow;
+            if (rows[r] != 0) stackTop = r;
+        }
+        hash = Zobrist.hash(rows);
+        updateSkyline();
+        markDirty(0, height - 1);
+    }
+
+    // Replaces rows top through bottom with the same rows of grid, the others are kept
+    void restore(long[] grid, int top, int bottom) {
+        for (int r = top; r <= bottom; r++) {
+            int slot = slot(r);
+            hash ^= Zobrist.row(r, rows[slot]);
+            rows[slot] = grid[r] & fullRow;
+            hash ^= Zobrist.row(r, rows[slot]);
+        }
+        if (stackTop >= top) {
+            stackTop = top;
+            while (stackTop < height && rows[slot(stackTop)] == 0) stackTop++;
+        }
+        updateSkyline();
+        markDirty(top, bottom);
+    }
+
+    // Rebuilds the column tops by scanning down from the top of the stack until every
+    // column has been seen, usually only a few rows
+    private void updateSkyline() {
+        Arrays.fill(columnTops, height);
+        long unseen = fullRow;
+        for (int row = stackTop; row < height && unseen != 0; row++) {
+            long fresh = rows[slot(row)] & unseen;
+            unseen &= ~fresh;
+            for (; fresh != 0; fresh &= fresh - 1) {
+                columnTops[Long.numberOfTrailingZeros(fresh)] = row;
+            }
+        }
+    }
+
+    // Hash of the cells in grid rows first through last
+    private long rowsHash(int first, int last) {
+        long h = 0;
+        for (int row = first; row <= last; row++) {
+            h ^= Zobrist.row(row, rows[slot(row)]);
+        }
+        return h;
+    }
+
+    // Slot in the ring that holds a grid row, rows past the bottom wrap around to the top
+    private int slot(int row) {
+        int slot = base + row;
+        if (slot >= height) slot -= height;
+        return slot >= height ? slot - height : slot;
+    }
+
+    // Widens the ranges of rows changed since the last markClean and the last takeChanges
+    private void markDirty(int top, int bottom) {
+        if (dirtyTop > dirtyBottom) {
+            dirtyTop = top;
+            dirtyBottom = bottom;
+        } else {
+            dirtyTop = Math.min(dirtyTop, top);
+            dirtyBottom = Math.max(dirtyBottom, bottom);
+        }
+        if (changedTop > changedBottom) {
+            changedTop = top;
+            changedBottom = bottom;
+        } else {
+            changedTop = Math.min(changedTop, top);
+            changedBottom = Math.max(changedBottom, bottom);
+        }
+    }
+
+    // Rows changed since the last markClean, used by renderers to redraw only what changed
+    public int getDirtyTop() {
+        return dirtyTop;
+    }
+
+    public int getDirtyBottom() {
+        return dirtyBottom;
+    }
+
+    public void markClean() {
+        dirtyTop = height;
+        dirtyBottom = -1;
+    }
+
+    // Rows changed since the last takeChanges, kept apart from the renderers' range so the
+    // undo history and the board do not reset each other's
+    int getChangedTop() {
+        return changedTop;
+    }
+
+    int getChangedBottom() {
+        return changedBottom;
+    }
+
+    // Forgets the changed rows and returns a mark that stays current until the next call, a
+    // caller that finds another mark knows someone else took the changes in between
+    long takeChanges() {
+        changedTop = height;
+        changedBottom = -1;
+        return ++changeMark;
+    }
+
+    long getChangeMark() {
+        return changeMark;
+    }
+
+    @Override
+    public boolean isOccupied(int row, int col) {
+        return (rows[slot(row)] & (1L << col)) != 0;
+    }
+
+    // Returns the occupancy mask of a row, bit col set when the cell is occupied
+    public long getRowBits(int row) {
+        return rows[slot(row)];
+    }
+
+    // Overwrites a row, used to set up positions directly
+    public void setRowBits(int row, long bits) {
+        int slot = slot(row);
+        hash ^= Zobrist.row(row, rows[slot]);
+        rows[slot] = bits & fullRow;
+        hash ^= Zobrist.row(row, rows[slot]);
+        if (rows[slot] != 0 && row < stackTop) stackTop = row;
+        updateSkyline();
+        markDirty(row, row);
+    }
+
+    @Override
+    public int getStackTop() {
+        return stackTop;
+    }
+
+    @Override
+    public int getColumnTop(int col) {
+        return columnTops[col];
+    }
+
+    @Override
+    public long getHash() {
+        return hash;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+}
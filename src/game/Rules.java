@@ -0,0 +1,331 @@
+package game;
+
+// Headless Tetris rules over any Grid: the active piece, the piece queue, gravity, lock delay,
+// line clears, garbage, game over and the events about them. Engine plays them on a RowGrid
+// and HugeEngine on a ChunkedGrid, so every board size follows this one copy of the rules.
+// Nothing here touches AWT, so games can be simulated without a display.
+abstract class Rules<G extends Grid> {
+    final G grid;
+    private final PieceQueue queue; // Upcoming pieces, its type and seed reproduce the piece sequence
+
+    private TetrinomeType pieceType; // Active piece, null once the game is over
+    private int pieceCol;
+    private int pieceRow;
+    private int pieceRotation;
+    private boolean gameOver;
+    private int gravity = 48;   // Ticks per row of gravity
+    private int lockDelay = 30; // Ticks a grounded piece waits before it locks
+    private int gravityCounter;
+    private int lockCounter;
+    private long ticks;
+    private int piecesPlaced;
+    private final int[] lastClearedRows; // Rows cleared by the last lock, bottom first, up to the height
+    private int lastClearCount;
+    private int linesCleared;
+    private EventBus events; // Told about spawns, moves, locks, clears and game over, null for none
+
+    Rules(G grid, long seed, RandomizerType randomizer) {
+        this.grid = grid;
+        this.queue = new PieceQueue(randomizer, seed);
+        this.lastClearedRows = new int[grid.getHeight()];
+        spawn();
+    }
+
+    // Applies one input to the active piece. Returns true if the piece moved.
+    // A DOWN that is blocked locks the piece, clears lines and spawns the next one.
+    // A HARD_DROP drops the piece as far as it goes and locks it, and always counts as a move.
+    public boolean step(Action action) {
+        if (gameOver) return false;
+
+        switch (action) {
+            case LEFT:
+                return tryMove(-1, 0, 0);
+            case RIGHT:
+                return tryMove(1, 0, 0);
+            case ROTATE:
+                return tryMove(0, 0, 1);
+            case DOWN:
+                if (tryMove(0, 1, 0)) return true;
+                lock();
+                return false;
+            case HARD_DROP:
+                pieceRow += dropDistance(pieceType, pieceRotation, pieceCol, pieceRow);
+                lock();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Advances the game by one logic tick: gravity pulls the piece down every gravity ticks,
+    // and a piece resting on the stack locks once it has been grounded for lockDelay ticks
+    public void tick() {
+        if (gameOver) return;
+        ticks++;
+
+        if (++gravityCounter >= gravity) {
+            gravityCounter = 0;
+            tryMove(0, 1, 0);
+        }
+
+        if (grid.fits(pieceType, pieceRotation, pieceCol, pieceRow + 1)) {
+            lockCounter = 0;
+        } else if (++lockCounter >= lockDelay) {
+            lock();
+        }
+    }
+
+    // Moves the active piece if the target position is free
+    private boolean tryMove(int dCol, int dRow, int quarterTurns) {
+        int rotation = (pieceRotation + quarterTurns) & (TetrinomeType.ROTATIONS - 1);
+        if (!grid.fits(pieceType, rotation, pieceCol + dCol, pieceRow + dRow)) return false;
+        pieceCol += dCol;
+        pieceRow += dRow;
+        pieceRotation = rotation;
+        publish(EventBus.Kind.MOVE, 0);
+        return true;
+    }
+
+    // Locks the active piece into the grid, clears lines and spawns the next piece
+    private void lock() {
+        grid.place(pieceType, pieceRotation, pieceCol, pieceRow);
+        piecesPlaced++;
+        publish(EventBus.Kind.LOCK, 0);
+        lastClearCount = clearLines(lastClearedRows);
+        if (lastClearCount > 0) publish(EventBus.Kind.LINES_CLEARED, lastClearCount);
+        spawn();
+    }
+
+    // Takes the next piece from the queue, the game is over if it does not fit
+    private void spawn() {
+        TetrinomeType next = queue.next();
+        int row = -next.getMinY(0); // Top row of the piece on the first grid row
+        int col = (grid.getWidth() - 1) / 2; // Centered, column 4 on a standard board
+        if (!grid.fits(next, 0, col, row)) {
+            endGame();
+            return;
+        }
+        pieceType = next;
+        gravityCounter = 0;
+        lockCounter = 0;
+        pieceCol = col;
+        pieceRow = row;
+        pieceRotation = 0;
+        publish(EventBus.Kind.SPAWN, 0);
+    }
+
+    private void endGame() {
+        gameOver = true;
+        pieceType = null;
+        publish(EventBus.Kind.GAME_OVER, 0);
+    }
+
+    // Sends an event about the active piece to the bus, if there is one
+    private void publish(EventBus.Kind kind, int count) {
+        if (events != null) {
+            events.publish(kind, pieceType, pieceRotation, pieceCol, pieceRow, count, ticks);
+        }
+    }
+
+    // Publishes every event from now on to a bus, null to stop. Events are published on the
+    // thread that drives the engine.
+    public void setEvents(EventBus events) {
+        this.events = events;
+    }
+
+    // Returns an upcoming piece, 0 being the piece that spawns next
+    public TetrinomeType getPreview(int index) {
+        return queue.peek(index);
+    }
+
+    public boolean fits(TetrinomeType type, int rotation, int col, int row) {
+        return grid.fits(type, rotation, col, row);
+    }
+
+    // Rows a fitting piece can fall before it lands. The skyline answers in O(piece width)
+    // whenever the piece is above the stack in its columns; a piece tucked under an
+    // overhang falls back to testing one row at a time.
+    public int dropDistance(TetrinomeType type, int rotation, int col, int row) {
+        int left = col + type.getMinX(rotation);
+        int[] bottoms = type.getBottoms(rotation);
+        int distance = grid.getHeight();
+        for (int i = 0; i < bottoms.length; i++) {
+            int gap = grid.getColumnTop(left + i) - (row + bottoms[i]) - 1;
+            if (gap < 0) {
+                distance = 0;
+                while (grid.fits(type, rotation, col, row + distance + 1)) distance++;
+                return distance;
+            }
+            distance = Math.min(distance, gap);
+        }
+        return distance;
+    }
+
+    // Row the active piece would land on, where the ghost piece is drawn, -1 once the game is over
+    public int getGhostRow() {
+        if (pieceType == null) return -1;
+        return pieceRow + dropDistance(pieceType, pieceRotation, pieceCol, pieceRow);
+    }
+
+    // Number of occupied rows from the floor up to the top of a column, holes included
+    public int getColumnHeight(int col) {
+        return grid.getHeight() - grid.getColumnTop(col);
+    }
+
+    // Marks the cells of a piece as occupied, cells outside the grid are dropped
+    public void place(TetrinomeType type, int rotation, int col, int row) {
+        grid.place(type, rotation, col, row);
+    }
+
+    // Removes completed rows, shifting the rows above down. Returns the number of rows cleared.
+    public int clearLines() {
+        return clearLines(null);
+    }
+
+    // Removes completed rows like clearLines(), also storing the grid rows that were cleared,
+    // bottom first and numbered as before the clear, into clearedRows when it is given
+    public int clearLines(int[] clearedRows) {
+        int cleared = grid.clearLines(clearedRows);
+        linesCleared += cleared;
+        return cleared;
+    }
+
+    // Pushes the stack up and fills the bottom rows with garbage, every cell but holeCol occupied.
+    // The game is over when the stack is pushed out of the top, or when the active piece cannot
+    // move up out of the garbage.
+    public void addGarbage(int count, int holeCol) {
+        if (holeCol < 0 || holeCol >= grid.getWidth()) {
+            throw new IllegalArgumentException("Hole column out of range: " + holeCol);
+        }
+        if (gameOver || count <= 0) return;
+        if (!grid.addGarbage(count, holeCol)) {
+            endGame();
+            return;
+        }
+
+        while (!grid.fits(pieceType, pieceRotation, pieceCol, pieceRow)) {
+            if (pieceRow + pieceType.getMinY(pieceRotation) == 0) {
+                endGame();
+                return;
+            }
+            pieceRow--;
+        }
+    }
+
+    // Replaces the active piece and the counters, used with a new grid to load snapshots. A null
+    // type is a finished game. Timing restarts: gravity and lock delay counters are reset.
+    void restorePiece(TetrinomeType type, int rotation, int col, int row, int pieces, int lines) {
+        pieceType = type;
+        gameOver = type == null;
+        pieceRotation = rotation;
+        pieceCol = col;
+        pieceRow = row;
+        gravityCounter = 0;
+        lockCounter = 0;
+        lastClearCount = 0;
+        piecesPlaced = pieces;
+        linesCleared = lines;
+    }
+
+    // The upcoming pieces, snapshots save and restore it
+    PieceQueue getQueue() {
+        return queue;
+    }
+
+    public G getGrid() {
+        return grid;
+    }
+
+    // Number of rows cleared by the last piece that locked
+    public int getLastClearCount() {
+        return lastClearCount;
+    }
+
+    // A row cleared by the last piece that locked, numbered as before the clear, 0 being the lowest
+    public int getLastClearedRow(int index) {
+        if (index < 0 || index >= lastClearCount) {
+            throw new IndexOutOfBoundsException("Cleared row out of range: " + index + " of " + lastClearCount);
+        }
+        return lastClearedRows[index];
+    }
+
+    public boolean isOccupied(int row, int col) {
+        return grid.isOccupied(row, col);
+    }
+
+    // Highest row that may hold occupied cells, height when the board is empty
+    public int getStackTop() {
+        return grid.getStackTop();
+    }
+
+    // Zobrist hash of the grid cells, equal grids have equal hashes
+    public long getHash() {
+        return grid.getHash();
+    }
+
+    public void setGravity(int ticksPerRow) {
+        if (ticksPerRow < 1) throw new IllegalArgumentException("Gravity must be at least one tick per row: " + ticksPerRow);
+        gravity = ticksPerRow;
+    }
+
+    public void setLockDelay(int ticks) {
+        if (ticks < 1) throw new IllegalArgumentException("Lock delay must be at least one tick: " + ticks);
+        lockDelay = ticks;
+    }
+
+    public int getGravity() {
+        return gravity;
+    }
+
+    public int getLockDelay() {
+        return lockDelay;
+    }
+
+    public long getSeed() {
+        return queue.getSeed();
+    }
+
+    public RandomizerType getRandomizerType() {
+        return queue.getType();
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public int getWidth() {
+        return grid.getWidth();
+    }
+
+    public int getHeight() {
+        return grid.getHeight();
+    }
+
+    public TetrinomeType getPieceType() {
+        return pieceType;
+    }
+
+    public int getPieceCol() {
+        return pieceCol;
+    }
+
+    public int getPieceRow() {
+        return pieceRow;
+    }
+
+    public int getPieceRotation() {
+        return pieceRotation;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public int getPiecesPlaced() {
+        return piecesPlaced;
+    }
+
+    public int getLinesCleared() {
+        return linesCleared;
+    }
+}
@@ -0,0 +1,165 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/*
+CLASS: SelfPlay
+DESCRIPTION: Tunes the Bot's evaluation weights with the cross-entropy method.
+             Every generation samples a population of weight vectors, plays a
+             set of seeded headless games with each, and refits the sampling
+             distribution to the best candidates. Each game owns its Engine
+             and Bot, so games share nothing and spread across all cores.
+USAGE: java game.SelfPlay [generations] [population] [games] [maxPieces]
+*/
+public class SelfPlay {
+    private static final int WIDTH = 10;
+    private static final int HEIGHT = 20;
+    private static final double ELITE_FRACTION = 0.2;
+    private static final double EXTRA_NOISE = 0.05; // Keeps the distribution from collapsing early
+
+    private final int population;
+    private final int games;     // Games played by each candidate, on the same seeds
+    private final int maxPieces; // Games are stopped after this many pieces
+    private final ExecutorService pool;
+    private final Random random = new Random(1);
+
+    public SelfPlay(int population, int games, int maxPieces, int threads) {
+        this.population = population;
+        this.games = games;
+        this.maxPieces = maxPieces;
+        this.pool = Executors.newFixedThreadPool(threads);
+    }
+
+    // Result of one game
+    private static final class GameResult {
+        final int pieces;
+        final int lines;
+        final long nanos;
+
+        GameResult(int pieces, int lines, long nanos) {
+            this.pieces = pieces;
+            this.lines = lines;
+            this.nanos = nanos;
+        }
+    }
+
+    // Plays one seeded game to game over or maxPieces without rendering
+    static GameResult play(double[] weights, long seed, int maxPieces) {
+        long start = System.nanoTime();
+        Engine engine = new Engine(WIDTH, HEIGHT, seed);
+        Bot bot = new Bot(weights, 1, TimeUnit.SECONDS.toNanos(1), null);
+        while (!engine.isGameOver() && engine.getPiecesPlaced() < maxPieces) {
+            // Without gravity every input on the bot's path goes through; should one be blocked,
+            // the bot finds a new path from wherever the piece is on its next call
+            engine.step(bot.nextAction(engine));
+        }
+        return new GameResult(engine.getPiecesPlaced(), engine.getLinesCleared(), System.nanoTime() - start);
+    }
+
+    // Runs the search and returns the mean of the final distribution
+    public double[] tune(int generations) throws InterruptedException, ExecutionException {
+        double[] mean = Bot.DEFAULT_WEIGHTS.clone();
+        double[] deviation = new double[Bot.FEATURES];
+        Arrays.fill(deviation, 0.5);
+
+        for (int generation = 0; generation < generations; generation++) {
+            double[][] candidates = new double[population][];
+            for (int c = 0; c < population; c++) {
+                candidates[c] = new double[Bot.FEATURES];
+                for (int f = 0; f < Bot.FEATURES; f++) {
+                    candidates[c][f] = mean[f] + deviation[f] * random.nextGaussian();
+                }
+            }
+            long[] seeds = new long[games];
+            for (int g = 0; g < games; g++) {
+                seeds[g] = random.nextLong();
+            }
+
+            // Every game is its own task, results come back through the futures
+            long start = System.nanoTime();
+            List<Future<GameResult>> futures = new ArrayList<>(population * games);
+            for (double[] candidate : candidates) {
+                for (long seed : seeds) {
+                    futures.add(pool.submit(() -> play(candidate, seed, maxPieces)));
+                }
+            }
+
+            double[] fitness = new double[population];
+            long totalPieces = 0;
+            for (int c = 0; c < population; c++) {
+                long pieces = 0;
+                long lines = 0;
+                long nanos = 0;
+                for (int g = 0; g < games; g++) {
+                    GameResult result = futures.get(c * games + g).get();
+                    pieces += result.pieces;
+                    lines += result.lines;
+                    nanos += result.nanos;
+                }
+                totalPieces += pieces;
+                fitness[c] = (double) lines / games;
+                double seconds = nanos / 1e9;
+                System.out.printf("gen %d cand %2d %s  %.1f games/s  %.0f pieces/s  %.1f lines/game%n",
+                        generation, c, format(candidates[c]), games / seconds, pieces / seconds, fitness[c]);
+            }
+            double wall = (System.nanoTime() - start) / 1e9;
+
+            // Refit the distribution to the elite candidates
+            Integer[] order = new Integer[population];
+            for (int c = 0; c < population; c++) order[c] = c;
+            Arrays.sort(order, (a, b) -> Double.compare(fitness[b], fitness[a]));
+            int elite = Math.max(1, (int) (population * ELITE_FRACTION));
+            for (int f = 0; f < Bot.FEATURES; f++) {
+                double sum = 0;
+                for (int e = 0; e < elite; e++) sum += candidates[order[e]][f];
+                mean[f] = sum / elite;
+                double squares = 0;
+                for (int e = 0; e < elite; e++) {
+                    double d = candidates[order[e]][f] - mean[f];
+                    squares += d * d;
+                }
+                deviation[f] = Math.sqrt(squares / elite) + EXTRA_NOISE;
+            }
+
+            System.out.printf("gen %d best %.1f lines/game  mean %s  %.1f games/s  %.0f pieces/s wall%n",
+                    generation, fitness[order[0]], format(mean), population * games / wall, totalPieces / wall);
+        }
+        return mean;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static String format(double[] weights) {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < weights.length; i++) {
+            if (i > 0) text.append(", ");
+            text.append(String.format("%7.4f", weights[i]));
+        }
+        return text.append(']').toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int generations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int population = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int maxPieces = args.length > 3 ? Integer.parseInt(args[3]) : 2000;
+
+        SelfPlay selfPlay = new SelfPlay(population, games, maxPieces, Runtime.getRuntime().availableProcessors());
+        try {
+            double[] weights = selfPlay.tune(generations);
+            System.out.println("tuned weights " + format(weights));
+        } finally {
+            selfPlay.shutdown();
+        }
+    }
+}
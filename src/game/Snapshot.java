@@ -0,0 +1,220 @@
+package game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/*
+CLASS: Snapshot
+DESCRIPTION: Bit-packed game position of a fixed board size. A record holds the
+             active piece (type, rotation and grid position), the next seven
+             pieces, and one bit per grid cell, so a 10x20 position takes 30
+             bytes. Records with the GAME flag also hold the randomizer type and
+             seed, the number of pieces dealt and the piece and line counts,
+             enough to continue the game exactly; corpora of positions usually
+             leave them out. Every record of a format has the same size, which is what lets
+             SnapshotCorpus index a memory-mapped file directly. A Snapshot
+             keeps encoding state and buffers, so each thread needs its own.
+*/
+public final class Snapshot {
+    public static final int GAME = 1; // Flag: records carry the randomizer state and counters
+    private static final int NO_PIECE = 7; // Type code of a finished game
+    private static final int UPCOMING = 7; // Upcoming pieces stored
+    private static final int RANDOMIZER_BITS = 3;
+    private static final TetrinomeType[] TYPES = TetrinomeType.values();
+    private static final RandomizerType[] RANDOMIZERS = RandomizerType.values();
+
+    private final int width;
+    private final int height;
+    private final int flags;
+    private final int colBits;
+    private final int rowBits;
+    private final int recordBytes;
+    private final long[] grid;
+    private final TetrinomeType[] upcoming = new TetrinomeType[UPCOMING];
+    private ByteBuffer buffer; // Buffer of the record being read or written
+    private long bits;         // Bits not yet written, or read but not used, lowest first
+    private int bitCount;
+
+    public Snapshot(int width, int height, int flags) {
+        if (width < 1 || width > Long.SIZE || height < 1) {
+            throw new IllegalArgumentException("Unsupported board size " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.flags = flags;
+        this.colBits = bitsFor(width);
+        this.rowBits = bitsFor(height);
+        this.grid = new long[height];
+        long total = 3 + 2 + colBits + rowBits + 3 + UPCOMING * 3 + (long) width * height;
+        if ((flags & GAME) != 0) total += 64 + 32 + 32 + 32 + RANDOMIZER_BITS;
+        if ((total + 7) / 8 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Board too large for a snapshot: " + width + "x" + height);
+        }
+        this.recordBytes = (int) ((total + 7) / 8);
+    }
+
+    public int getRecordBytes() {
+        return recordBytes;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    // Writes one record of an engine's position at the buffer's position, advancing it
+    public void write(Engine engine, ByteBuffer out) {
+        if (engine.getWidth() != width || engine.getHeight() != height) {
+            throw new IllegalArgumentException("Engine is " + engine.getWidth() + "x" + engine.getHeight()
+                    + ", snapshot format is " + width + "x" + height);
+        }
+        buffer = out;
+        bits = 0;
+        bitCount = 0;
+        if ((flags & GAME) != 0) {
+            long seed = engine.getSeed();
+            put((int) seed, 32);
+            put((int) (seed >>> 32), 32);
+            put((int) engine.getQueue().getTaken(), 32);
+            put(engine.getPiecesPlaced(), 32);
+            put(engine.getLinesCleared(), 32);
+            put(engine.getRandomizerType().ordinal(), RANDOMIZER_BITS);
+        }
+
+        TetrinomeType type = engine.getPieceType();
+        put(type == null ? NO_PIECE : type.ordinal(), 3);
+        put(type == null ? 0 : engine.getPieceRotation(), 2);
+        put(type == null ? 0 : engine.getPieceCol(), colBits);
+        put(type == null ? 0 : engine.getPieceRow(), rowBits);
+
+        // Previewing deals the upcoming pieces if they are not dealt yet, which does not change
+        // the sequence
+        put(UPCOMING, 3);
+        for (int i = 0; i < UPCOMING; i++) {
+            put(engine.getPreview(i).ordinal(), 3);
+        }
+
+        for (int row = 0; row < height; row++) {
+            long rowBits = engine.getRowBits(row);
+            if (width > 32) {
+                put((int) rowBits, 32);
+                put((int) (rowBits >>> 32), width - 32);
+            } else {
+                put((int) rowBits, width);
+            }
+        }
+        if (bitCount > 0) out.put((byte) bits);
+        buffer = null;
+    }
+
+    // Reads one record at the buffer's position into an engine of the same size, advancing it.
+    // Without the GAME flag the counters are zeroed and pieces after the stored ones are dealt
+    // by the engine's own randomizer.
+    public void read(ByteBuffer in, Engine into) {
+        if (into.getWidth() != width || into.getHeight() != height) {
+            throw new IllegalArgumentException("Engine is " + into.getWidth() + "x" + into.getHeight()
+                    + ", snapshot format is " + width + "x" + height);
+        }
+        int start = in.position();
+        buffer = in;
+        bits = 0;
+        bitCount = 0;
+        long seed = 0;
+        long taken = 0;
+        int pieces = 0;
+        int lines = 0;
+        RandomizerType randomizer = null;
+        if ((flags & GAME) != 0) {
+            seed = (get(32) & 0xFFFFFFFFL) | (long) get(32) << 32;
+            taken = get(32) & 0xFFFFFFFFL;
+            pieces = get(32);
+            lines = get(32);
+            randomizer = RANDOMIZERS[get(RANDOMIZER_BITS) % RANDOMIZERS.length];
+        }
+
+        int code = get(3);
+        int rotation = get(2);
+        int col = get(colBits);
+        int row = get(rowBits);
+        int count = get(3);
+        for (int i = 0; i < UPCOMING; i++) {
+            upcoming[i] = TYPES[get(3) % TYPES.length];
+        }
+
+        for (int r = 0; r < height; r++) {
+            if (width > 32) {
+                grid[r] = (get(32) & 0xFFFFFFFFL) | (long) get(width - 32) << 32;
+            } else {
+                grid[r] = get(width) & 0xFFFFFFFFL;
+            }
+        }
+        in.position(start + recordBytes);
+        buffer = null;
+
+        into.restore(grid, code == NO_PIECE ? null : TYPES[code], rotation, col, row, pieces, lines);
+        if (randomizer != null) {
+            into.getQueue().restore(randomizer, seed, taken);
+        } else {
+            into.getQueue().restore(upcoming, Math.min(count, UPCOMING));
+        }
+    }
+
+    // Saves one engine to a file that continues the game exactly when loaded
+    public static void save(Engine engine, Path path) throws IOException {
+        try (SnapshotCorpus.Writer writer = new SnapshotCorpus.Writer(path, engine.getWidth(), engine.getHeight(), GAME)) {
+            writer.add(engine);
+        }
+    }
+
+    // Loads the first position of a file written by save or SnapshotCorpus
+    public static Engine load(Path path) throws IOException {
+        try (SnapshotCorpus corpus = SnapshotCorpus.open(path)) {
+            if (corpus.size() == 0) throw new IOException("No positions in " + path);
+            return corpus.get(0);
+        }
+    }
+
+    // Loads the first position of a file into an engine of the same board size
+    public static void load(Path path, Engine into) throws IOException {
+        try (SnapshotCorpus corpus = SnapshotCorpus.open(path)) {
+            if (corpus.size() == 0) throw new IOException("No positions in " + path);
+            corpus.read(0, into);
+        }
+    }
+
+    // Appends the low count bits of value, whole bytes go out as they fill
+    private void put(int value, int count) {
+        bits |= (value & (-1L >>> (Long.SIZE - count))) << bitCount;
+        bitCount += count;
+        while (bitCount >= 8) {
+            buffer.put((byte) bits);
+            bits >>>= 8;
+            bitCount -= 8;
+        }
+    }
+
+    // Takes the next count bits, count at most 32
+    private int get(int count) {
+        while (bitCount < count) {
+            bits |= (buffer.get() & 0xFFL) << bitCount;
+            bitCount += 8;
+        }
+        int value = (int) (bits & (-1L >>> (Long.SIZE - count)));
+        bits >>>= count;
+        bitCount -= count;
+        return value;
+    }
+
+    // Bits needed for values 0 to limit - 1
+    private static int bitsFor(int limit) {
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(limit - 1));
+    }
+}
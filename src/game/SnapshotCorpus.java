@@ -0,0 +1,209 @@
+package game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/*
+CLASS: SnapshotCorpus
+DESCRIPTION: File of fixed-size Snapshot records behind a small header: magic,
+             version, flags, board width and height, and the record count. The
+             file is memory-mapped, so opening a corpus of millions of positions
+             reads nothing up front, the OS pages records in as they are used,
+             and any record is found by multiplying its index. Writer streams
+             records out through one reused buffer.
+USAGE: java game.SnapshotCorpus corpus.bin
+*/
+public class SnapshotCorpus implements AutoCloseable {
+    static final int MAGIC = 0x54534E50; // "TSNP"
+    static final int VERSION = 2; // 2: any randomizer, pieces dealt instead of bags dealt
+    static final int HEADER_BYTES = 4 + 1 + 1 + 2 + 4 + 8;
+    private static final int COUNT_OFFSET = HEADER_BYTES - 8;
+    private static final long MAX_CHUNK = Integer.MAX_VALUE; // Largest single mapping
+
+    private final FileChannel channel;
+    private final Snapshot format;
+    private final long size;
+    private final int recordsPerChunk;
+    private final MappedByteBuffer[] chunks; // Mappings of up to recordsPerChunk records each
+
+    private SnapshotCorpus(FileChannel channel, Snapshot format, long size) throws IOException {
+        this.channel = channel;
+        this.format = format;
+        this.size = size;
+        int recordBytes = format.getRecordBytes();
+        this.recordsPerChunk = (int) Math.max(1, MAX_CHUNK / recordBytes);
+        int chunkCount = (int) ((size + recordsPerChunk - 1) / recordsPerChunk);
+        this.chunks = new MappedByteBuffer[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            long first = (long) i * recordsPerChunk;
+            long records = Math.min(recordsPerChunk, size - first);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * recordBytes, records * recordBytes);
+        }
+    }
+
+    public static SnapshotCorpus open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Read until the header is complete or the file ends
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("Not a snapshot corpus: " + path);
+            }
+            int version = header.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot corpus version " + version + ": " + path);
+            }
+            int flags = header.get();
+            int width = header.getShort();
+            int height = header.getInt();
+            long size = header.getLong();
+            Snapshot format = new Snapshot(width, height, flags);
+            if (HEADER_BYTES + size * format.getRecordBytes() > channel.size()) {
+                throw new IOException("Snapshot corpus is truncated: " + path);
+            }
+            return new SnapshotCorpus(channel, format, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int getWidth() {
+        return format.getWidth();
+    }
+
+    public int getHeight() {
+        return format.getHeight();
+    }
+
+    // Loads a position into an engine of the corpus's board size. Not thread-safe, other
+    // threads pass their own Snapshot to read(long, Engine, Snapshot).
+    public void read(long index, Engine into) {
+        read(index, into, format);
+    }
+
+    // Loads a position using a caller's Snapshot of the same format, one per thread
+    public void read(long index, Engine into, Snapshot snapshot) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Position " + index + " of " + size);
+        }
+        // Duplicates share the mapping but have their own position
+        ByteBuffer chunk = chunks[(int) (index / recordsPerChunk)].duplicate();
+        chunk.position((int) (index % recordsPerChunk) * format.getRecordBytes());
+        snapshot.read(chunk, into);
+    }
+
+    // A new Snapshot for this corpus's format, for reading from another thread
+    public Snapshot newSnapshot() {
+        return new Snapshot(format.getWidth(), format.getHeight(), format.getFlags());
+    }
+
+    public Engine get(long index) {
+        Engine engine = new Engine(format.getWidth(), format.getHeight(), 0);
+        read(index, engine);
+        return engine;
+    }
+
+    // Streams every position in order through one reused engine, the action must not keep it
+    public void forEach(Consumer<Engine> action) {
+        Engine engine = new Engine(format.getWidth(), format.getHeight(), 0);
+        for (ByteBuffer chunk : chunks) {
+            ByteBuffer records = chunk.duplicate();
+            while (records.hasRemaining()) {
+                format.read(records, engine);
+                action.accept(engine);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Appends positions to a new corpus file, the record count is filled in on close
+    public static class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final Snapshot format;
+        private final ByteBuffer buffer;
+        private long count;
+
+        public Writer(Path path, int width, int height, int flags) throws IOException {
+            this.format = new Snapshot(width, height, flags);
+            this.buffer = ByteBuffer.allocateDirect(Math.max(1 << 16, format.getRecordBytes()));
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.putInt(MAGIC);
+            buffer.put((byte) VERSION);
+            buffer.put((byte) flags);
+            buffer.putShort((short) width);
+            buffer.putInt(height);
+            buffer.putLong(0); // Count, written on close
+        }
+
+        public void add(Engine engine) throws IOException {
+            if (buffer.remaining() < format.getRecordBytes()) {
+                drain();
+            }
+            format.write(engine, buffer);
+            count++;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+                ByteBuffer total = ByteBuffer.allocate(8).putLong(0, count);
+                while (total.hasRemaining()) {
+                    channel.write(total, COUNT_OFFSET + total.position());
+                }
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        for (String name : args) {
+            long start = System.nanoTime();
+            long[] totals = new long[2]; // Pieces in play and occupied cells
+            try (SnapshotCorpus corpus = open(Paths.get(name))) {
+                corpus.forEach(engine -> {
+                    if (engine.getPieceType() != null) totals[0]++;
+                    for (int row = 0; row < engine.getHeight(); row++) {
+                        totals[1] += Long.bitCount(engine.getRowBits(row));
+                    }
+                });
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%s: %d positions of %dx%d, %d with a piece in play, %.1f cells each, %.0f positions/s%n",
+                        name, corpus.size(), corpus.getWidth(), corpus.getHeight(), totals[0],
+                        (double) totals[1] / Math.max(1, corpus.size()), corpus.size() / seconds);
+            }
+        }
+    }
+}
@@ -4,56 +4,47 @@ import java.awt.Color;
 import java.awt.Graphics;
 
 public class Tetrinome extends Polygon {
-    private Point[] points;
     private TetrinomeType type;
     private static final int TILE_SIZE = 30;
     private Board board;
     private boolean placed; // Flag to indicate if the Tetrinome is placed
+    private int col;           // Grid column of the piece origin
+    private int row;           // Grid row of the piece origin
+    private int rotationIndex; // Clockwise quarter turns, 0-3
 
-    // Constructor
+    // Constructor, position is in canvas pixels and is snapped to the board grid
     public Tetrinome(TetrinomeType type, Point position, Board board) {
-        super(getPointsForType(type), position, 0);
-        this.points = getPointsForType(type);
+        this(type, board.toCol(position.x), board.toRow(position.y), board);
+    }
+
+    // Constructor, col and row are grid coordinates of the piece origin
+    public Tetrinome(TetrinomeType type, int col, int row, Board board) {
+        super(getPointsForType(type), new Point(0, 0), 0);
         this.type = type;
         this.board = board;
         this.placed = false; // Initialize as not placed
+        setGridPosition(col, row);
     }
 
     // Determines the points based on the Tetrinome type
     private static Point[] getPointsForType(TetrinomeType type) {
-        switch (type) {
-            case I:
-                return new Point[]{new Point(0, 0), new Point(0, 1 * TILE_SIZE), new Point(0, 2 * TILE_SIZE), new Point(0, 3 * TILE_SIZE)};
-            case O:
-                return new Point[]{new Point(0, 0), new Point(0, 1 * TILE_SIZE), new Point(1 * TILE_SIZE, 1 * TILE_SIZE), new Point(1 * TILE_SIZE, 0)};
-            case T:
-                return new Point[]{new Point(0, 0), new Point(-1 * TILE_SIZE, 0), new Point(1 * TILE_SIZE, 0), new Point(0, -1 * TILE_SIZE)};
-            case S:
-                return new Point[]{new Point(0, 0), new Point(0, -1 * TILE_SIZE), new Point(-1 * TILE_SIZE, 0), new Point(-1 * TILE_SIZE, 1 * TILE_SIZE)};
-            case Z:
-                return new Point[]{new Point(0, 0), new Point(0, -1 * TILE_SIZE), new Point(1 * TILE_SIZE, 0), new Point(1 * TILE_SIZE, 1 * TILE_SIZE)};
-            case J:
-                return new Point[]{new Point(0, 0), new Point(0, -1 * TILE_SIZE), new Point(0, -2 * TILE_SIZE), new Point(-1 * TILE_SIZE, -2 * TILE_SIZE)};
-            case L:
-                return new Point[]{new Point(0, 0), new Point(0, -1 * TILE_SIZE), new Point(0, -2 * TILE_SIZE), new Point(1 * TILE_SIZE, -2 * TILE_SIZE)};
-            default:
-                return new Point[]{};
+        int[] cells = type.getCells(0);
+        Point[] points = new Point[cells.length / 2];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Point(cells[2 * i] * TILE_SIZE, cells[2 * i + 1] * TILE_SIZE);
         }
+        return points;
     }
 
-    // Returns the transformed points after applying rotation and position
+    // Places the points on the cells of the current rotation and grid position. Polygon caches
+    // them until setPosition or setRotation changes something.
     @Override
-    public Point[] getPoints() {
-        Point[] transformedPoints = new Point[points.length];
-        double angle = Math.toRadians(rotation);
-        double cos = Math.cos(angle);
-        double sin = Math.sin(angle);
-        for (int i = 0; i < points.length; i++) {
-            double newX = points[i].x * cos - points[i].y * sin + position.x;
-            double newY = points[i].x * sin + points[i].y * cos + position.y;
-            transformedPoints[i] = new Point(newX, newY);
+    protected void transform(double[] xs, double[] ys) {
+        int[] cells = type.getCells(rotationIndex);
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = board.toX(col + cells[2 * i]);
+            ys[i] = board.toY(row + cells[2 * i + 1]);
         }
-        return transformedPoints;
     }
 
     // Paints the Tetrinome
@@ -61,14 +52,24 @@ public class Tetrinome extends Polygon {
         if (placed) return;
 
         brush.setColor(this.getColor());
-        Point[] transformedPoints = this.getPoints();
-        int[] xCoords = new int[transformedPoints.length];
-        int[] yCoords = new int[transformedPoints.length];
-        for (int i = 0; i < transformedPoints.length; i++) {
-            xCoords[i] = (int) transformedPoints[i].x;
-            yCoords[i] = (int) transformedPoints[i].y;
+        int[] cells = type.getCells(rotationIndex);
+        int size = board.getCellSize();
+        for (int i = 0; i < cells.length; i += 2) {
+            brush.fillRect(board.toX(col + cells[i]), board.toY(row + cells[i + 1]), size, size);
+        }
+    }
+
+    // Paints the outline of the Tetrinome where it would land if dropped
+    public void paintGhost(Graphics brush) {
+        if (placed) return;
+
+        brush.setColor(this.getColor());
+        int[] cells = type.getCells(rotationIndex);
+        int size = board.getCellSize();
+        int ghostRow = row + board.dropDistance(this);
+        for (int i = 0; i < cells.length; i += 2) {
+            brush.drawRect(board.toX(col + cells[i]), board.toY(ghostRow + cells[i + 1]), size - 1, size - 1);
         }
-        brush.fillPolygon(xCoords, yCoords, transformedPoints.length);
     }
 
     // New move method using Behavior interface and lambda expressions
@@ -76,6 +77,44 @@ public class Tetrinome extends Polygon {
         behavior.apply(this); // Apply the lambda-defined behavior to this Tetrinome
     }
 
+    // Moves the Tetrinome by a number of grid cells
+    public void moveBy(int dCol, int dRow) {
+        setGridPosition(col + dCol, row + dRow);
+    }
+
+    // Turns the Tetrinome by a number of clockwise quarter turns (negative turns counter-clockwise)
+    public void turn(int quarterTurns) {
+        rotationIndex = (rotationIndex + quarterTurns) & (TetrinomeType.ROTATIONS - 1);
+        setRotation(rotationIndex * 90);
+    }
+
+    @Override
+    public void rotate(int degrees) {
+        turn(degrees / 90);
+    }
+
+    public void setRotationIndex(int rotationIndex) {
+        turn(rotationIndex - this.rotationIndex);
+    }
+
+    public void setGridPosition(int col, int row) {
+        this.col = col;
+        this.row = row;
+        setPosition(board.toX(col), board.toY(row));
+    }
+
+    public int getCol() {
+        return col;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getRotationIndex() {
+        return rotationIndex;
+    }
+
     // Getter for Tetrinome type
     public TetrinomeType getType() {
         return type;
@@ -92,7 +131,12 @@ public class Tetrinome extends Polygon {
 
     // Gets the color of the Tetrinome
     public Color getColor() {
-        switch (this.type) {
+        return colorOf(type);
+    }
+
+    // Color used for pieces of a type
+    public static Color colorOf(TetrinomeType type) {
+        switch (type) {
             case I: return Color.CYAN;
             case O: return Color.YELLOW;
             case T: return Color.MAGENTA;
@@ -1,5 +1,92 @@
 package game;
 
 public enum TetrinomeType {
-    I, O, T, S, Z, J, L
+    I(0, 0, 0, 1, 0, 2, 0, 3),
+    O(0, 0, 0, 1, 1, 1, 1, 0),
+    T(0, 0, -1, 0, 1, 0, 0, -1),
+    S(0, 0, 0, -1, -1, 0, -1, 1),
+    Z(0, 0, 0, -1, 1, 0, 1, 1),
+    J(0, 0, 0, -1, 0, -2, -1, -2),
+    L(0, 0, 0, -1, 0, -2, 1, -2);
+
+    public static final int ROTATIONS = 4;
+
+    // Tables built once at class load, indexed by rotation (0-3, clockwise quarter turns)
+    private final int[][] cells = new int[ROTATIONS][];     // Cell offsets as {x0, y0, x1, y1, ...}
+    private final long[][] rowMasks = new long[ROTATIONS][]; // One mask per covered row, bit 0 = minX
+    private final int[] minX = new int[ROTATIONS];
+    private final int[] maxX = new int[ROTATIONS];
+    private final int[] minY = new int[ROTATIONS];
+    private final int[] maxY = new int[ROTATIONS];
+    private final int[][] bottoms = new int[ROTATIONS][]; // Lowest cell y in each column, from minX
+
+    TetrinomeType(int... shape) {
+        cells[0] = shape;
+        for (int r = 1; r < ROTATIONS; r++) {
+            // A clockwise quarter turn on screen maps (x, y) to (-y, x)
+            int[] prev = cells[r - 1];
+            int[] next = new int[prev.length];
+            for (int i = 0; i < prev.length; i += 2) {
+                next[i] = -prev[i + 1];
+                next[i + 1] = prev[i];
+            }
+            cells[r] = next;
+        }
+
+        for (int r = 0; r < ROTATIONS; r++) {
+            int[] c = cells[r];
+            minX[r] = maxX[r] = c[0];
+            minY[r] = maxY[r] = c[1];
+            for (int i = 2; i < c.length; i += 2) {
+                minX[r] = Math.min(minX[r], c[i]);
+                maxX[r] = Math.max(maxX[r], c[i]);
+                minY[r] = Math.min(minY[r], c[i + 1]);
+                maxY[r] = Math.max(maxY[r], c[i + 1]);
+            }
+            rowMasks[r] = new long[maxY[r] - minY[r] + 1];
+            for (int i = 0; i < c.length; i += 2) {
+                rowMasks[r][c[i + 1] - minY[r]] |= 1L << (c[i] - minX[r]);
+            }
+            bottoms[r] = new int[maxX[r] - minX[r] + 1];
+            for (int i = 0; i < bottoms[r].length; i++) {
+                bottoms[r][i] = minY[r]; // Every column between minX and maxX holds a cell
+            }
+            for (int i = 0; i < c.length; i += 2) {
+                int column = c[i] - minX[r];
+                bottoms[r][column] = Math.max(bottoms[r][column], c[i + 1]);
+            }
+        }
+    }
+
+    // Returns the cell offsets for a rotation, the array is shared and must not be modified
+    public int[] getCells(int rotation) {
+        return cells[rotation];
+    }
+
+    // Returns the row masks for a rotation, starting at row offset getMinY, the array is shared
+    public long[] getRowMasks(int rotation) {
+        return rowMasks[rotation];
+    }
+
+    // Returns the bottom profile for a rotation: the y offset of the lowest cell in each
+    // column, starting at column offset getMinX. The array is shared.
+    public int[] getBottoms(int rotation) {
+        return bottoms[rotation];
+    }
+
+    public int getMinX(int rotation) {
+        return minX[rotation];
+    }
+
+    public int getMaxX(int rotation) {
+        return maxX[rotation];
+    }
+
+    public int getMinY(int rotation) {
+        return minY[rotation];
+    }
+
+    public int getMaxY(int rotation) {
+        return maxY[rotation];
+    }
 }
@@ -11,6 +11,12 @@ NOTE: This class is the metaphorical "main method" of your program,
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.TileObserver;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import game.Board.TetrinomeController;
 
@@ -18,33 +24,156 @@ class Tetris extends Game {
     static int counter = 0;
     private Tetrinome[] tetrinomes;
     private static final int TILE_SIZE = 30;
-	private static final int CENTER_X = 400;
-	private static final int CENTER_Y = 300;
-	private static final int BOARD_WIDTH = 10;
-	private static final int BOARD_HEIGHT = 20;
-	private Board board = new Board(BOARD_WIDTH, BOARD_HEIGHT, TILE_SIZE, 800, 600, this);
-	private GameOver gameOver;
+	private static final int WINDOW_WIDTH = Integer.getInteger("tetris.windowWidth", 800);
+	private static final int WINDOW_HEIGHT = Integer.getInteger("tetris.windowHeight", 600);
+	private static final int CENTER_X = WINDOW_WIDTH / 2;
+	private static final int CENTER_Y = WINDOW_HEIGHT / 2;
+	private static final int BOARD_WIDTH = Integer.getInteger("tetris.columns", 10);
+	private static final int BOARD_HEIGHT = Integer.getInteger("tetris.rows", 20);
+	private static final int HUGE_CELL_SIZE = 8; // Cell size when the board does not fit the window
+	private static final int PREVIEW_PIECES = 5;  // Pieces shown in the next-piece panel
+	private static final int PREVIEW_CELL_SIZE = TILE_SIZE / 2;
+	private static final RandomizerType RANDOMIZER = RandomizerType.parse(System.getProperty("tetris.randomizer", "seven-bag"));
+	private static final int GRAVITY_MILLIS = 800;    // Time for a piece to fall one row
+	private static final int LOCK_DELAY_MILLIS = 500; // Time a grounded piece waits before locking
+	private static final int DAS_MILLIS = 167;       // Time left or right is held before auto-shift
+	private static final int ARR_MILLIS = 33;        // Time between auto-shift repeats, 0 for instant
+	private static final int SOFT_DROP_MILLIS = 33;  // Time between soft drop repeats
+	private static final long BOT_BUDGET_NANOS = 1_000_000; // Time the bot may think about each piece
+	private static final int EVENT_CAPACITY = 4096;   // Game events a subscriber can fall behind by
+	private static final int HISTORY_SIZE = 1000;     // Placements practice mode can undo
+	private GameOver gameOver = new GameOver();
+	private Board board;
+	private HugeBoard hugeBoard; // Viewport onto a board too wide for Engine or too big for the window
 	private TetrinomeController controller;
-	
-	private Tetrinome o = new Tetrinome(TetrinomeType.O, new Point(11 * TILE_SIZE, 0), board);
-	private Tetrinome i = new Tetrinome(TetrinomeType.I, new Point(13 * TILE_SIZE, 0), board);
-	private Tetrinome t = new Tetrinome(TetrinomeType.T, new Point(8 * TILE_SIZE, 4 * TILE_SIZE), board);
-	private Tetrinome s = new Tetrinome(TetrinomeType.S, new Point(10 * TILE_SIZE, 6 * TILE_SIZE), board);
-	private Tetrinome z = new Tetrinome(TetrinomeType.Z, new Point(8 * TILE_SIZE, 8 * TILE_SIZE), board);
-	private Tetrinome l = new Tetrinome(TetrinomeType.L, new Point(10 * TILE_SIZE, 10 * TILE_SIZE), board);
-	private Tetrinome j = new Tetrinome(TetrinomeType.J, new Point(12 * TILE_SIZE, 12 * TILE_SIZE), board);
+	private Bot bot; // Plays instead of the keyboard when tetris.bot is set
+	private ReplayRecorder recorder; // Logs the game to the file named by tetris.record
+	private final EventBus events = new EventBus(EVENT_CAPACITY); // Events of the game being played
+	private EventBus.Subscriber loopEvents; // Read on the game loop, where game over is handled
+	private BoardHistory history; // Snapshot after every placement when tetris.practice is set
+	private final AtomicInteger rewind = new AtomicInteger(); // Snapshots to move by, Z and Y add to it
+	private volatile boolean overlay; // Timing overlay, toggled with F3
+	private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 50);
+	private static final Font HINT_FONT = new Font("Arial", Font.PLAIN, 20);
+	private static final String COUNTER_LABEL = "Counter is ";
+	private final char[] counterText = new char[COUNTER_LABEL.length() + 11]; // Label plus an int
+
     public Tetris() {
-        super("Tetris!", 800, 600);
+        super("Tetris!", WINDOW_WIDTH, WINDOW_HEIGHT);
+        setUp();
+    }
+
+    // A game without a window, played by a bot, for tests that tick and paint it themselves
+    Tetris(Bot bot) {
+        super(WINDOW_WIDTH, WINDOW_HEIGHT);
+        setUp();
+        this.bot = bot;
+    }
+
+    private void setUp() {
         this.setFocusable(true);
         this.requestFocus();
+        this.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_F3) overlay = !overlay;
+                // Undo and redo are applied on the game loop like every other change
+                if (e.getKeyCode() == KeyEvent.VK_Z) rewind.decrementAndGet();
+                if (e.getKeyCode() == KeyEvent.VK_Y) rewind.incrementAndGet();
+            }
+        });
+        setTickRate(Integer.getInteger("tetris.tickRate", 60));
+
+        // Boards wider than a long or bigger than the window are played in a scrolling viewport,
+        // without the bot or the recorder, which work on Engine
+        if (BOARD_WIDTH > Long.SIZE || BOARD_WIDTH * TILE_SIZE > WINDOW_WIDTH || BOARD_HEIGHT * TILE_SIZE > WINDOW_HEIGHT) {
+            HugeEngine engine = new HugeEngine(BOARD_WIDTH, BOARD_HEIGHT, ThreadLocalRandom.current().nextLong(), RANDOMIZER);
+            engine.setGravity(Math.max(1, getTickRate() * GRAVITY_MILLIS / 1000));
+            engine.setLockDelay(Math.max(1, getTickRate() * LOCK_DELAY_MILLIS / 1000));
+            engine.setEvents(events);
+            loopEvents = events.subscribe();
+            hugeBoard = new HugeBoard(engine, HUGE_CELL_SIZE, WINDOW_WIDTH, WINDOW_HEIGHT);
+            this.addKeyListener(hugeBoard);
+            configureInput(hugeBoard.getInputHandler());
+            return;
+        }
 
         // Initialize the board and controller
-        board = new Board(10, 20, 30, 800, 600, this);
+        Engine engine = new Engine(BOARD_WIDTH, BOARD_HEIGHT, ThreadLocalRandom.current().nextLong(), RANDOMIZER);
+        board = new Board(engine, TILE_SIZE, WINDOW_WIDTH, WINDOW_HEIGHT, this);
         controller = board.getController();
+        engine.setEvents(events);
+        loopEvents = events.subscribe();
 
         // Add the controller as a key listener
         this.addKeyListener(controller);
+
+        // Gravity and lock delay are defined in time, converted to ticks at the configured rate
+        board.getEngine().setGravity(Math.max(1, getTickRate() * GRAVITY_MILLIS / 1000));
+        board.getEngine().setLockDelay(Math.max(1, getTickRate() * LOCK_DELAY_MILLIS / 1000));
+        configureInput(controller.getInputHandler());
+
+        if (Boolean.getBoolean("tetris.bot")) {
+            bot = new Bot(Bot.DEFAULT_WEIGHTS, 2, BOT_BUDGET_NANOS, ForkJoinPool.commonPool());
+        }
+
+        String record = System.getProperty("tetris.record");
+        if (record != null) {
+            try {
+                recorder = new ReplayRecorder(Paths.get(record), board.getEngine());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            controller.setRecorder(recorder);
+            Runtime.getRuntime().addShutdownHook(new Thread(recorder::close));
+        }
+
+        // Practice mode, off while recording since a replay cannot hold a rewind
+        if (Boolean.getBoolean("tetris.practice") && recorder == null) {
+            history = new BoardHistory(HISTORY_SIZE);
+            history.record(engine);
+        }
+    }
+
+    // Auto-shift and soft drop are defined in time, converted to ticks at the configured rate
+    private void configureInput(InputHandler input) {
+        input.setDas(Math.max(1, getTickRate() * Integer.getInteger("tetris.das", DAS_MILLIS) / 1000));
+        input.setArr(getTickRate() * Integer.getInteger("tetris.arr", ARR_MILLIS) / 1000);
+        input.setSoftDrop(Math.max(1, getTickRate() * SOFT_DROP_MILLIS / 1000));
+    }
+
+    @Override
+    protected void tick() {
+        if (hugeBoard != null) {
+            hugeBoard.tick();
+            while (loopEvents.poll()) {
+                if (loopEvents.getKind() == EventBus.Kind.GAME_OVER) gameOver.trigger();
+            }
+            return;
+        }
+        int steps = rewind.getAndSet(0);
+        if (history != null && steps != 0) {
+            int index = Math.max(0, Math.min(history.size() - 1, history.getCursor() + steps));
+            history.jumpTo(index, board.getEngine());
+            gameOver.reset();
+        }
+        if (bot != null) {
+            controller.play(bot);
+        }
+        controller.tick();
+        boolean placed = false;
+        while (loopEvents.poll()) {
+            if (loopEvents.getKind() == EventBus.Kind.LOCK) placed = true;
+            if (loopEvents.getKind() == EventBus.Kind.GAME_OVER) gameOver.trigger();
+        }
+        if (history != null && placed) {
+            history.record(board.getEngine());
+        }
+        if (recorder != null && gameOver.isActive()) {
+            recorder.close();
+        }
     }
+
     public void paint(Graphics brush) {
         brush.setColor(Color.black);
         brush.fillRect(0, 0, width, height);
@@ -53,24 +182,82 @@ class Tetris extends Game {
         if (gameOver.isActive()) {
             // Render "Game Over" text directly in the paint method
             brush.setColor(Color.red);
-            brush.setFont(new Font("Arial", Font.BOLD, 50));
+            brush.setFont(TITLE_FONT);
             brush.drawString("GAME OVER", CENTER_X - 150, CENTER_Y);
-            brush.setFont(new Font("Arial", Font.PLAIN, 20));
+            brush.setFont(HINT_FONT);
             brush.drawString("Press R to Restart or Q to Quit", CENTER_X - 150, CENTER_Y + 50);
+            if (history != null) brush.drawString("Press Z to Undo", CENTER_X - 150, CENTER_Y + 80);
             return; // Stop painting the game
         }
 
         // Draw the board and active Tetrinome
-        board.draw(brush);
-        Tetrinome activeTetrinome = controller.getActiveTetrinome();
+        long paintStart = System.nanoTime();
+        if (hugeBoard != null) {
+            hugeBoard.draw(brush);
+        } else {
+            board.draw(brush);
+        }
+        metrics.recordPaint(System.nanoTime() - paintStart);
+        Tetrinome activeTetrinome = controller == null ? null : controller.getActiveTetrinome();
         if (activeTetrinome != null) {
+            activeTetrinome.paintGhost(brush);
             activeTetrinome.paint(brush);
         }
+        if (board != null) {
+            drawPreview(brush);
+        }
 
         // Debugging message
         counter++;
         brush.setColor(Color.white);
-        brush.drawString("Counter is " + counter, 10, 10);
+        brush.drawChars(counterText, 0, formatCounter(), 10, 10);
+        if (overlay) {
+            metrics.drawOverlay(brush, 10, 30);
+        }
+    }
+
+    // Draws the next pieces in a column to the right of the board, straight from the engine's queue
+    private void drawPreview(Graphics brush) {
+        Engine engine = board.getEngine();
+        if (engine.isGameOver()) return;
+        int x = board.toX(engine.getWidth()) + TILE_SIZE;
+        int y = board.toY(0);
+        brush.setColor(Color.white);
+        brush.drawString("NEXT", x, y - 4);
+        for (int p = 0; p < PREVIEW_PIECES; p++) {
+            TetrinomeType type = engine.getPreview(p);
+            int[] cells = type.getCells(0);
+            brush.setColor(Tetrinome.colorOf(type));
+            for (int i = 0; i < cells.length; i += 2) {
+                int cellX = x + (cells[i] - type.getMinX(0)) * PREVIEW_CELL_SIZE;
+                int cellY = y + (cells[i + 1] - type.getMinY(0)) * PREVIEW_CELL_SIZE;
+                brush.fillRect(cellX, cellY, PREVIEW_CELL_SIZE - 1, PREVIEW_CELL_SIZE - 1);
+            }
+            y += 3 * PREVIEW_CELL_SIZE;
+        }
+    }
+
+    // Writes the counter label and value into counterText without allocating, returns the length
+    private int formatCounter() {
+        COUNTER_LABEL.getChars(0, COUNTER_LABEL.length(), counterText, 0);
+        int length = COUNTER_LABEL.length();
+        int value = counter;
+        int digits = value == 0 ? 1 : 0;
+        for (int v = value; v != 0; v /= 10) digits++;
+        for (int i = length + digits - 1; i >= length; i--) {
+            counterText[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return length + digits;
+    }
+
+    @Override
+    protected void frameShown(long nanos) {
+        InputHandler input = hugeBoard != null ? hugeBoard.getInputHandler() : controller.getInputHandler();
+        long press = input.takeUnshownPress();
+        if (press != Long.MIN_VALUE) {
+            metrics.recordInputLatency(nanos - press);
+        }
     }
 
     // Inner GameOver class
@@ -94,6 +281,11 @@ class Tetris extends Game {
         }
     }
 
+    // Events of the game, subscribers such as sound or scoring read them on their own threads
+    public EventBus getEvents() {
+        return events;
+    }
+
     // Provides access to the GameOver inner class
     // @return The GameOver instance
     public GameOver getGameOver() {
@@ -101,6 +293,6 @@ class Tetris extends Game {
     }
     public static void main(String[] args) {
         Tetris a = new Tetris();
-        a.repaint();
+        a.start();
     }
 }
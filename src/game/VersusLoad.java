@@ -0,0 +1,197 @@
+package game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+CLASS: VersusLoad
+DESCRIPTION: Loopback load test for VersusServer. Starts a server in this JVM
+             and drives simulated clients from one non-blocking Selector thread,
+             every client sending a random input at a fixed rate. Clients whose
+             match ended reconnect, so the session count holds. Reports round
+             trip latency seen by the clients, the server's own per-message
+             latency, and sessions per core from the CPU time the server's
+             loops used.
+USAGE: java game.VersusLoad [sessions] [seconds] [serverThreads] [inputsPerSecond]
+*/
+public class VersusLoad {
+    private static final int SENT_RING = 64; // Send times kept per client, a power of two
+    private static final Action[] ACTIONS = Action.values();
+
+    // One simulated player
+    private static final class Client {
+        SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(256);
+        final ByteBuffer out = ByteBuffer.allocate(1024);
+        final long[] sent = new long[SENT_RING]; // Send time by sequence number
+        int sequence;
+        long nextInput; // 0 until the match has started
+    }
+
+    private final InetSocketAddress address;
+    private final long inputNanos;
+    private final Selector selector;
+    private final SplittableRandom random = new SplittableRandom(1);
+    private final Histogram roundTrip = new Histogram();
+    private long inputs;
+    private long acks;
+    private long garbage;
+    private long games;
+
+    private VersusLoad(InetSocketAddress address, int inputsPerSecond) throws IOException {
+        this.address = address;
+        this.inputNanos = TimeUnit.SECONDS.toNanos(1) / inputsPerSecond;
+        this.selector = Selector.open();
+    }
+
+    private void connect(Client client) throws IOException {
+        client.channel = SocketChannel.open();
+        client.channel.configureBlocking(false);
+        client.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        client.in.clear();
+        client.out.clear();
+        client.nextInput = 0;
+        client.channel.connect(address);
+        client.channel.register(selector, SelectionKey.OP_CONNECT, client);
+    }
+
+    private void run(Client[] clients, long nanos) throws IOException {
+        for (Client client : clients) {
+            connect(client);
+        }
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() - end < 0) {
+            selector.select(this::handle, 1);
+            long now = System.nanoTime();
+            for (Client client : clients) {
+                if (client.nextInput != 0 && now - client.nextInput >= 0) {
+                    send(client, now);
+                }
+            }
+        }
+        for (Client client : clients) {
+            client.channel.close();
+        }
+        selector.close();
+    }
+
+    private void handle(SelectionKey key) {
+        Client client = (Client) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                client.channel.finishConnect();
+                key.interestOps(SelectionKey.OP_READ);
+            } else if (key.isReadable()) {
+                read(client);
+            }
+        } catch (IOException e) {
+            reconnect(client);
+        }
+    }
+
+    private void read(Client client) throws IOException {
+        ByteBuffer in = client.in;
+        if (client.channel.read(in) < 0) {
+            reconnect(client);
+            return;
+        }
+        long now = System.nanoTime();
+        in.flip();
+        int type;
+        while ((type = VersusProtocol.next(in)) >= 0) {
+            switch (type) {
+                case VersusProtocol.START:
+                    in.position(in.position() + 8 + 1 + 1);
+                    VersusProtocol.readVarint(in);
+                    VersusProtocol.readVarint(in);
+                    client.nextInput = now + random.nextLong(inputNanos) + 1; // Spread the clients out
+                    break;
+                case VersusProtocol.ACK:
+                    int sequence = VersusProtocol.readVarint(in);
+                    roundTrip.record(now - client.sent[sequence & (SENT_RING - 1)]);
+                    acks++;
+                    break;
+                case VersusProtocol.GARBAGE:
+                    in.position(in.position() + 2);
+                    garbage++;
+                    break;
+                case VersusProtocol.END:
+                    in.get();
+                    games++;
+                    reconnect(client);
+                    return;
+                default:
+                    throw new IOException("Unexpected message type " + type);
+            }
+        }
+        in.compact();
+    }
+
+    // Sends one random input, hard drops often enough that pieces lock and games finish
+    private void send(Client client, long now) {
+        int roll = random.nextInt(16);
+        Action action = roll < 2 ? Action.HARD_DROP : ACTIONS[roll % Action.HARD_DROP.ordinal()];
+        client.sent[client.sequence & (SENT_RING - 1)] = now;
+        VersusProtocol.writeInput(client.out, action, client.sequence++);
+        inputs++;
+        client.nextInput += inputNanos;
+        try {
+            client.out.flip();
+            client.channel.write(client.out);
+            client.out.compact();
+        } catch (IOException e) {
+            reconnect(client);
+        }
+    }
+
+    private void reconnect(Client client) {
+        try {
+            client.channel.close();
+            connect(client);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int rate = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        InetSocketAddress any = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        try (VersusServer server = new VersusServer(any, threads, 60)) {
+            server.start();
+            Client[] clients = new Client[sessions];
+            for (int i = 0; i < sessions; i++) clients[i] = new Client();
+            VersusLoad load = new VersusLoad(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()), rate);
+
+            long cpuStart = server.getCpuNanos();
+            long start = System.nanoTime();
+            load.run(clients, TimeUnit.SECONDS.toNanos(seconds));
+            double wall = (System.nanoTime() - start) / 1e9;
+            double cores = (server.getCpuNanos() - cpuStart) / 1e9 / wall;
+            Thread.sleep(1100); // Lets the loops publish their latest latency
+            Histogram latency = server.getLatency();
+
+            System.out.printf("%d sessions, %d server loops, %d cores%n",
+                    sessions, threads, Runtime.getRuntime().availableProcessors());
+            System.out.printf("%d inputs (%.0f/s), %d acks, %d garbage messages, %d games finished%n",
+                    load.inputs, load.inputs / wall, load.acks, load.garbage, load.games);
+            System.out.printf("round trip  p50 %d us  p99 %d us  max %d us%n",
+                    load.roundTrip.percentile(50) / 1000, load.roundTrip.percentile(99) / 1000, load.roundTrip.getMax() / 1000);
+            System.out.printf("server      p50 %d us  p99 %d us  max %d us%n",
+                    latency.percentile(50) / 1000, latency.percentile(99) / 1000, latency.getMax() / 1000);
+            System.out.printf("server loops used %.2f cores, %.0f sessions per core%n", cores, sessions / Math.max(cores, 1e-9));
+        }
+    }
+}
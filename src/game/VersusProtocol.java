@@ -0,0 +1,107 @@
+package game;
+
+import java.nio.ByteBuffer;
+
+/*
+CLASS: VersusProtocol
+DESCRIPTION: Binary messages between VersusServer and its clients. Every message
+             is framed as one length byte, counting the type and payload, then
+             one type byte and the payload. Counts and sequence numbers are
+             varints, so an input is usually three or four bytes on the wire.
+
+             Client to server:
+               INPUT   action (byte), sequence (varint)
+             Server to client:
+               START   seed (long), width (byte), height (byte),
+                       gravity (varint), lock delay (varint)
+               ACK     sequence (varint) of the input that was applied
+               GARBAGE rows (byte), hole column (byte) pushed onto the board
+               END     1 if the receiver won, 0 if it lost
+*/
+public final class VersusProtocol {
+    public static final byte INPUT = 1;
+    public static final byte START = 2;
+    public static final byte ACK = 3;
+    public static final byte GARBAGE = 4;
+    public static final byte END = 5;
+
+    public static final int MAX_FRAME = 1 + 1 + 8 + 1 + 1 + 5 + 5; // Largest frame, a START
+
+    private VersusProtocol() {}
+
+    public static void writeInput(ByteBuffer out, Action action, int sequence) {
+        int start = begin(out, INPUT);
+        out.put((byte) action.ordinal());
+        writeVarint(out, sequence);
+        end(out, start);
+    }
+
+    public static void writeStart(ByteBuffer out, long seed, int width, int height, int gravity, int lockDelay) {
+        int start = begin(out, START);
+        out.putLong(seed);
+        out.put((byte) width);
+        out.put((byte) height);
+        writeVarint(out, gravity);
+        writeVarint(out, lockDelay);
+        end(out, start);
+    }
+
+    public static void writeAck(ByteBuffer out, int sequence) {
+        int start = begin(out, ACK);
+        writeVarint(out, sequence);
+        end(out, start);
+    }
+
+    public static void writeGarbage(ByteBuffer out, int rows, int holeCol) {
+        int start = begin(out, GARBAGE);
+        out.put((byte) rows);
+        out.put((byte) holeCol);
+        end(out, start);
+    }
+
+    public static void writeEnd(ByteBuffer out, boolean won) {
+        int start = begin(out, END);
+        out.put((byte) (won ? 1 : 0));
+        end(out, start);
+    }
+
+    // Returns the type of the next complete frame in a buffer in read mode, positioned at its
+    // payload, or -1 leaving the buffer untouched when the frame has not fully arrived
+    public static int next(ByteBuffer in) {
+        if (!in.hasRemaining()) return -1;
+        int length = in.get(in.position()) & 0xFF;
+        if (in.remaining() < 1 + length) return -1;
+        in.position(in.position() + 1);
+        return in.get();
+    }
+
+    public static void writeVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    public static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    // Reserves the length byte and writes the type, returns where the frame starts
+    private static int begin(ByteBuffer out, byte type) {
+        int start = out.position();
+        out.put((byte) 0);
+        out.put(type);
+        return start;
+    }
+
+    // Fills in the length byte once the payload is written
+    private static void end(ByteBuffer out, int start) {
+        out.put(start, (byte) (out.position() - start - 1));
+    }
+}
@@ -0,0 +1,464 @@
+package game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+CLASS: VersusServer
+DESCRIPTION: Head-to-head match server. Connections are paired in the order they
+             arrive, and both players of a match live on the same event loop, a
+             thread running a non-blocking Selector, so a match's two Engines
+             are only touched by one thread and need no locks. The server owns
+             the simulation: clients send inputs, the loop applies them, ticks
+             gravity at the tick rate and pushes garbage rows onto the opponent
+             when a player clears lines. Messages are in VersusProtocol.
+USAGE: java game.VersusServer [port] [threads]
+*/
+public class VersusServer implements AutoCloseable {
+    public static final int WIDTH = 10;
+    public static final int HEIGHT = 20;
+    private static final int[] GARBAGE_FOR_LINES = {0, 0, 1, 2, 4}; // Rows sent for 0-4 lines cleared
+    private static final int IN_CAPACITY = 256;
+    private static final int OUT_CAPACITY = 4096; // Unsent bytes a client may fall behind by before it is dropped
+    private static final int MAX_CATCH_UP = 5;    // Ticks run at most per loop pass after a stall
+    private static final Action[] ACTIONS = Action.values();
+
+    private final ServerSocketChannel server;
+    private final Loop[] loops;
+    private final long tickNanos;
+    private final SplittableRandom seeds = new SplittableRandom(); // Match seeds, acceptor thread only
+    private SocketChannel waiting; // Accepted connection without an opponent yet, acceptor thread only
+    private int nextLoop;
+    private Thread acceptor;
+    private volatile boolean open = true;
+
+    public VersusServer(InetSocketAddress address, int threads, int tickRate) throws IOException {
+        if (threads < 1) throw new IllegalArgumentException("Need at least one loop thread: " + threads);
+        if (tickRate < 1) throw new IllegalArgumentException("Tick rate must be positive: " + tickRate);
+        this.tickNanos = TimeUnit.SECONDS.toNanos(1) / tickRate;
+        this.loops = new Loop[threads];
+        for (int i = 0; i < threads; i++) {
+            loops[i] = new Loop();
+        }
+        this.server = ServerSocketChannel.open();
+        server.bind(address, 1024);
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public void start() {
+        for (int i = 0; i < loops.length; i++) {
+            loops[i].thread = new Thread(loops[i], "versus-loop-" + i);
+            loops[i].thread.start();
+        }
+        acceptor = new Thread(this::accept, "versus-accept");
+        acceptor.start();
+    }
+
+    // Accepts connections on a blocking channel and hands each pair to the next loop
+    private void accept() {
+        while (open) {
+            try {
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                if (waiting == null) {
+                    waiting = channel;
+                } else {
+                    loops[nextLoop].add(new Match(waiting, channel, seeds.nextLong()));
+                    nextLoop = (nextLoop + 1) % loops.length;
+                    waiting = null;
+                }
+            } catch (ClosedChannelException e) {
+                return; // Closed by close()
+            } catch (IOException e) {
+                System.err.println("Accept failed: " + e);
+            }
+        }
+    }
+
+    // Players in matches right now
+    public int getSessions() {
+        int sessions = 0;
+        for (Loop loop : loops) sessions += loop.sessions;
+        return sessions;
+    }
+
+    // Inputs applied since the server started
+    public long getMessages() {
+        long messages = 0;
+        for (Loop loop : loops) messages += loop.messages;
+        return messages;
+    }
+
+    // CPU time used by the loop threads, to work out sessions per core
+    public long getCpuNanos() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long nanos = 0;
+        for (Loop loop : loops) {
+            if (loop.thread != null) nanos += Math.max(0, threads.getThreadCpuTime(loop.thread.getId()));
+        }
+        return nanos;
+    }
+
+    // Time from reading an input to writing its ACK, merged over the loops and up to a second old
+    public Histogram getLatency() {
+        Histogram merged = new Histogram();
+        for (Loop loop : loops) {
+            synchronized (loop.published) {
+                merged.add(loop.published);
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        server.close();
+        for (Loop loop : loops) {
+            loop.selector.wakeup();
+        }
+        try {
+            if (acceptor != null) acceptor.join();
+            for (Loop loop : loops) {
+                if (loop.thread != null) loop.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (waiting != null) waiting.close();
+    }
+
+    // One player's connection and board
+    private static final class Session {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(IN_CAPACITY);
+        final ByteBuffer out = ByteBuffer.allocate(OUT_CAPACITY);
+        SelectionKey key;
+        Engine engine;
+        Session opponent;
+        Match match;
+        int piecesSeen;
+        int unacked;    // ACKs queued since the last complete write
+        long readStamp; // When the oldest unacked input was read
+        boolean dirty;  // Queued output, listed in the loop's dirty list
+
+        Session(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    // Two sessions playing the same piece sequence
+    private static final class Match {
+        final Session first;
+        final Session second;
+        final Session[] players;
+        final long seed;
+        final SplittableRandom holes; // Garbage hole columns
+        int index; // Position in the loop's match list
+        boolean over;
+
+        Match(SocketChannel a, SocketChannel b, long seed) {
+            this.first = new Session(a);
+            this.second = new Session(b);
+            this.players = new Session[] {first, second};
+            this.seed = seed;
+            this.holes = new SplittableRandom(seed);
+            first.opponent = second;
+            second.opponent = first;
+            first.match = this;
+            second.match = this;
+        }
+    }
+
+    // Event loop owning a share of the matches: reads inputs, ticks, writes replies
+    private final class Loop implements Runnable {
+        final Selector selector;
+        final ConcurrentLinkedQueue<Match> pending = new ConcurrentLinkedQueue<>(); // Handed over by the acceptor
+        final ArrayList<Match> matches = new ArrayList<>();
+        final ArrayList<Session> dirty = new ArrayList<>();
+        final Histogram latency = new Histogram();   // Loop thread only
+        final Histogram published = new Histogram(); // Copy of latency for other threads, guarded by itself
+        volatile int sessions;
+        volatile long messages;
+        Thread thread;
+
+        Loop() throws IOException {
+            selector = Selector.open();
+        }
+
+        void add(Match match) {
+            pending.add(match);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            long second = TimeUnit.SECONDS.toNanos(1);
+            long nextTick = System.nanoTime() + tickNanos;
+            long nextPublish = nextTick + second;
+            try {
+                while (open) {
+                    long wait = TimeUnit.NANOSECONDS.toMillis(nextTick - System.nanoTime());
+                    if (wait > 0) {
+                        selector.select(this::handle, wait);
+                    } else {
+                        selector.selectNow(this::handle);
+                    }
+
+                    Match match;
+                    while ((match = pending.poll()) != null) {
+                        begin(match);
+                    }
+
+                    // Fixed timestep gravity, a stalled loop drops the ticks it cannot catch up on
+                    long now = System.nanoTime();
+                    for (int i = 0; i < MAX_CATCH_UP && now - nextTick >= 0; i++) {
+                        tick();
+                        nextTick += tickNanos;
+                    }
+                    if (now - nextTick >= 0) nextTick = now + tickNanos;
+
+                    flush();
+                    if (now - nextPublish >= 0) {
+                        synchronized (published) {
+                            published.copyFrom(latency);
+                        }
+                        nextPublish += second;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                for (int i = matches.size() - 1; i >= 0; i--) {
+                    end(matches.get(i), null);
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    System.err.println("Closing selector failed: " + e);
+                }
+            }
+        }
+
+        // Registers both players, creates their boards from the match seed and sends START
+        private void begin(Match match) {
+            match.index = matches.size();
+            matches.add(match);
+            sessions += 2;
+            for (Session session : match.players) {
+                session.engine = new Engine(WIDTH, HEIGHT, match.seed);
+                try {
+                    session.key = session.channel.register(selector, SelectionKey.OP_READ, session);
+                } catch (ClosedChannelException e) {
+                    end(match, session.opponent);
+                    return;
+                }
+                VersusProtocol.writeStart(session.out, match.seed, WIDTH, HEIGHT,
+                        session.engine.getGravity(), session.engine.getLockDelay());
+                markDirty(session);
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            Session session = (Session) key.attachment();
+            if (!key.isValid()) return; // Closed earlier in this pass when its match ended
+            try {
+                if (key.isReadable()) read(session);
+                if (key.isValid() && key.isWritable()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                    markDirty(session);
+                }
+            } catch (IOException | RuntimeException e) {
+                // A broken connection or a frame that cannot be parsed drops that session alone
+                end(session.match, session.opponent);
+            }
+        }
+
+        // Applies every complete INPUT frame that has arrived and queues its ACK
+        private void read(Session session) throws IOException {
+            ByteBuffer in = session.in;
+            if (session.channel.read(in) < 0) {
+                end(session.match, session.opponent); // Leaving forfeits the match
+                return;
+            }
+            long now = System.nanoTime();
+            in.flip();
+            int limit = in.limit();
+            while (!session.match.over) {
+                int frameStart = in.position();
+                int type = VersusProtocol.next(in);
+                if (type < 0) break;
+                // The payload is parsed within its frame, one that is short or long is malformed
+                int frameEnd = frameStart + 1 + (in.get(frameStart) & 0xFF);
+                int code = -1;
+                int sequence = 0;
+                if (type == VersusProtocol.INPUT && in.position() < frameEnd) {
+                    in.limit(frameEnd);
+                    try {
+                        code = in.get();
+                        sequence = VersusProtocol.readVarint(in);
+                    } catch (BufferUnderflowException e) {
+                        code = -1;
+                    }
+                    in.limit(limit);
+                }
+                if (code < 0 || code >= ACTIONS.length || in.position() != frameEnd) {
+                    end(session.match, session.opponent); // Malformed input forfeits too
+                    return;
+                }
+                session.engine.step(ACTIONS[code]);
+                messages++;
+                if (!reserve(session)) return;
+                VersusProtocol.writeAck(session.out, sequence);
+                if (session.unacked++ == 0) session.readStamp = now;
+                markDirty(session);
+                settle(session);
+            }
+            in.compact();
+        }
+
+        // Advances gravity and lock delay on every board
+        private void tick() {
+            // Backwards, so a match that ends and is swapped out does not skip one
+            for (int i = matches.size() - 1; i >= 0; i--) {
+                Match match = matches.get(i);
+                match.first.engine.tick();
+                settle(match.first);
+                if (match.over) continue;
+                match.second.engine.tick();
+                settle(match.second);
+            }
+        }
+
+        // Sends garbage for a piece that just cleared lines and ends the match on game over
+        private void settle(Session session) {
+            Engine engine = session.engine;
+            if (session.piecesSeen != engine.getPiecesPlaced()) {
+                session.piecesSeen = engine.getPiecesPlaced();
+                int rows = GARBAGE_FOR_LINES[engine.getLastClearCount()];
+                Session opponent = session.opponent;
+                if (rows > 0 && !session.match.over) {
+                    int hole = session.match.holes.nextInt(WIDTH);
+                    opponent.engine.addGarbage(rows, hole);
+                    if (!reserve(opponent)) return;
+                    VersusProtocol.writeGarbage(opponent.out, rows, hole);
+                    markDirty(opponent);
+                    if (opponent.engine.isGameOver()) {
+                        end(session.match, session);
+                        return;
+                    }
+                }
+            }
+            if (engine.isGameOver()) end(session.match, session.opponent);
+        }
+
+        // Checks there is room for another frame, dropping a client that stopped reading
+        private boolean reserve(Session session) {
+            if (session.out.remaining() >= VersusProtocol.MAX_FRAME) return true;
+            end(session.match, session.opponent);
+            return false;
+        }
+
+        // Sends END to both players and disconnects them, null winner when the server shuts down
+        private void end(Match match, Session winner) {
+            if (match.over) return;
+            match.over = true;
+            Match last = matches.remove(matches.size() - 1);
+            if (last != match) {
+                matches.set(match.index, last);
+                last.index = match.index;
+            }
+            sessions -= 2;
+            for (Session session : match.players) {
+                if (winner != null && session.out.remaining() >= VersusProtocol.MAX_FRAME) {
+                    VersusProtocol.writeEnd(session.out, session == winner);
+                    write(session);
+                }
+                try {
+                    session.channel.close();
+                } catch (IOException e) {
+                    System.err.println("Closing session failed: " + e);
+                }
+            }
+        }
+
+        private void markDirty(Session session) {
+            if (!session.dirty) {
+                session.dirty = true;
+                dirty.add(session);
+            }
+        }
+
+        // Writes queued output, waiting for OP_WRITE on sessions whose socket buffer is full
+        private void flush() {
+            for (int i = 0; i < dirty.size(); i++) {
+                Session session = dirty.get(i);
+                session.dirty = false;
+                if (session.match.over) continue;
+                if (!write(session) && session.key.isValid()) {
+                    session.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            }
+            dirty.clear();
+        }
+
+        // Returns true once everything queued has been written
+        private boolean write(Session session) {
+            ByteBuffer out = session.out;
+            try {
+                out.flip();
+                session.channel.write(out);
+                out.compact();
+            } catch (IOException e) {
+                out.clear();
+                end(session.match, session.opponent);
+                return true;
+            }
+            if (out.position() > 0) return false;
+            long now = System.nanoTime();
+            for (; session.unacked > 0; session.unacked--) {
+                latency.record(now - session.readStamp);
+            }
+            return true;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        try (VersusServer server = new VersusServer(new InetSocketAddress(port), threads, 60)) {
+            server.start();
+            System.out.println("Listening on port " + server.getPort() + " with " + threads + " loops");
+            long lastMessages = 0;
+            while (true) {
+                Thread.sleep(5000);
+                long messages = server.getMessages();
+                Histogram latency = server.getLatency();
+                System.out.printf("%d sessions  %.0f inputs/s  latency p50 %d us  p99 %d us%n",
+                        server.getSessions(), (messages - lastMessages) / 5.0,
+                        latency.percentile(50) / 1000, latency.percentile(99) / 1000);
+                lastMessages = messages;
+            }
+        }
+    }
+}
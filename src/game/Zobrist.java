@@ -0,0 +1,51 @@
+package game;
+
+// Zobrist keys for grid cells. Keys are derived from the cell coordinates with a 64-bit mixer
+// instead of a stored table, so boards of any height share them. The hash of a grid is the XOR
+// of the keys of its occupied cells, which makes placing and clearing cells a matter of XORing
+// keys in and out.
+public final class Zobrist {
+    private Zobrist() {}
+
+    // Key of the cell at (row, col)
+    public static long key(int row, int col) {
+        long z = ((long) row << 16 | col) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // XOR of the keys of the occupied cells in one row
+    public static long row(int row, long bits) {
+        return row(row, 0, bits);
+    }
+
+    // XOR of the keys of the occupied cells in 64 columns of a row, bit 0 being firstCol
+    public static long row(int row, int firstCol, long bits) {
+        long hash = 0;
+        while (bits != 0) {
+            hash ^= key(row, firstCol + Long.numberOfTrailingZeros(bits));
+            bits &= bits - 1;
+        }
+        return hash;
+    }
+
+    // Hash of a whole grid given as one bitmask per row
+    public static long hash(long[] rows) {
+        long hash = 0;
+        for (int row = 0; row < rows.length; row++) {
+            hash ^= row(row, rows[row]);
+        }
+        return hash;
+    }
+
+    // XOR of the keys of the cells a piece covers at a grid position
+    public static long piece(TetrinomeType type, int rotation, int col, int row) {
+        int[] cells = type.getCells(rotation);
+        long hash = 0;
+        for (int i = 0; i < cells.length; i += 2) {
+            hash ^= key(row + cells[i + 1], col + cells[i]);
+        }
+        return hash;
+    }
+}
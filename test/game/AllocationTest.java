@@ -0,0 +1,42 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.awt.Graphics;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.image.BufferedImage;
+import org.junit.jupiter.api.Test;
+
+// Plays a bot game through Tetris without a window, frame by frame the way the game loop does:
+// a tick, a paint with the timing overlay on, and the frame shown. Once warmed up a frame
+// allocates nothing.
+class AllocationTest {
+    private static final int FRAMES_PER_CHUNK = 200;
+
+    @Test
+    void framesAllocateNothing() {
+        Tetris tetris = new Tetris(new Bot(Bot.DEFAULT_WEIGHTS, 2, Long.MAX_VALUE / 4, null));
+        KeyEvent f3 = new KeyEvent(tetris, KeyEvent.KEY_PRESSED, 0, 0, KeyEvent.VK_F3, KeyEvent.CHAR_UNDEFINED);
+        for (KeyListener listener : tetris.getKeyListeners()) {
+            listener.keyPressed(f3);
+        }
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        Graphics brush = image.getGraphics();
+        int[] frames = new int[1];
+
+        long bytes = Allocations.steadyState(() -> {
+            for (int i = 0; i < FRAMES_PER_CHUNK; i++) {
+                tetris.tick();
+                tetris.paint(brush);
+                tetris.frameShown(System.nanoTime());
+                frames[0]++;
+            }
+        }, 100, 50);
+        brush.dispose();
+
+        assertFalse(tetris.getGameOver().isActive(), "the bot topped out after " + frames[0] + " frames");
+        assertEquals(0, bytes, "bytes allocated by " + 50 * FRAMES_PER_CHUNK + " frames");
+    }
+}
@@ -0,0 +1,32 @@
+package game;
+
+import java.lang.management.ManagementFactory;
+
+// Measures the bytes the current thread allocates in a piece of code once it is warmed up.
+// The code runs in chunks called from short loops, so the measured loop is never compiled
+// on-stack: entering an OSR compilation allocates a few bytes of its own, once, which would
+// otherwise be blamed on the code being measured.
+final class Allocations {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Allocations() {}
+
+    // Runs chunk warmups times, then returns the fewest bytes allocated by rounds calls of it
+    // over a few tries, so a one-off in the JIT is not mistaken for the steady state
+    static long steadyState(Runnable chunk, int warmups, int rounds) {
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        for (int i = 0; i < warmups; i++) {
+            chunk.run();
+        }
+        long fewest = Long.MAX_VALUE;
+        for (int attempt = 0; attempt < 3 && fewest > 0; attempt++) {
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < rounds; i++) {
+                chunk.run();
+            }
+            fewest = Math.min(fewest, THREADS.getCurrentThreadAllocatedBytes() - before);
+        }
+        return fewest;
+    }
+}
@@ -0,0 +1,180 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class BoardHistoryTest {
+    private static final Action[] ACTIONS = Action.values();
+    private static final int PREVIEW = 5;
+
+    // Everything a snapshot puts back, taken straight from the engine
+    private static final class State {
+        final long[] rows;
+        final TetrinomeType type;
+        final int rotation;
+        final int col;
+        final int row;
+        final int pieces;
+        final int lines;
+        final TetrinomeType[] preview = new TetrinomeType[PREVIEW];
+
+        State(Engine engine) {
+            rows = new long[engine.getHeight()];
+            for (int r = 0; r < rows.length; r++) {
+                rows[r] = engine.getRowBits(r);
+            }
+            type = engine.getPieceType();
+            rotation = engine.getPieceRotation();
+            col = engine.getPieceCol();
+            row = engine.getPieceRow();
+            pieces = engine.getPiecesPlaced();
+            lines = engine.getLinesCleared();
+            for (int i = 0; i < PREVIEW; i++) {
+                preview[i] = engine.getPreview(i);
+            }
+        }
+
+        void assertRestored(Engine engine, String where) {
+            for (int r = 0; r < rows.length; r++) {
+                assertEquals(rows[r], engine.getRowBits(r), where + " row " + r);
+            }
+            assertEquals(Zobrist.hash(rows), engine.getHash(), where + " hash");
+            assertEquals(type, engine.getPieceType(), where);
+            assertEquals(type == null, engine.isGameOver(), where);
+            assertEquals(rotation, engine.getPieceRotation(), where + " rotation");
+            assertEquals(col, engine.getPieceCol(), where + " col");
+            assertEquals(row, engine.getPieceRow(), where + " piece row");
+            assertEquals(pieces, engine.getPiecesPlaced(), where + " pieces");
+            assertEquals(lines, engine.getLinesCleared(), where + " lines");
+            for (int i = 0; i < PREVIEW; i++) {
+                assertEquals(preview[i], engine.getPreview(i), where + " preview " + i);
+            }
+            int top = 0;
+            while (top < rows.length && rows[top] == 0) top++;
+            assertTrue(engine.getStackTop() <= top, where + " stack top below an occupied row");
+            for (int c = 0; c < engine.getWidth(); c++) {
+                int columnTop = 0;
+                while (columnTop < rows.length && (rows[columnTop] & 1L << c) == 0) columnTop++;
+                assertEquals(rows.length - columnTop, engine.getColumnHeight(c), where + " column " + c);
+            }
+        }
+    }
+
+    // Random games with garbage between placements, undone, redone and jumped about on the
+    // engine that was recorded and now and then on a fresh one, checked against a plain list
+    // of everything the engine held at each record
+    @Test
+    void jumpsRestoreWhatWasRecorded() {
+        SplittableRandom random = new SplittableRandom(24);
+        for (int trial = 0; trial < 150; trial++) {
+            int width = 4 + random.nextInt(9);
+            int height = trial % 3 == 0 ? 100 + random.nextInt(200) : 8 + random.nextInt(30);
+            int capacity = 1 + random.nextInt(12);
+            long seed = random.nextLong();
+            RandomizerType randomizer = RandomizerType.values()[trial % RandomizerType.values().length];
+            Engine engine = new Engine(width, height, seed, randomizer);
+            BoardHistory history = new BoardHistory(capacity);
+            ArrayList<State> states = new ArrayList<>();
+            int cursor = 0;
+            history.record(engine);
+            states.add(new State(engine));
+
+            for (int op = 0; op < 400; op++) {
+                String where = "trial " + trial + " op " + op;
+                int choice = random.nextInt(20);
+                boolean jumped = choice >= 14;
+                if (choice < 14 && !engine.isGameOver()) {
+                    int placed = engine.getPiecesPlaced();
+                    engine.step(ACTIONS[random.nextInt(ACTIONS.length)]);
+                    if (random.nextInt(30) == 0) engine.addGarbage(1 + random.nextInt(2), random.nextInt(width));
+                    if (engine.getPiecesPlaced() == placed && !engine.isGameOver()) continue;
+                    history.record(engine);
+                    while (states.size() > cursor + 1) states.remove(states.size() - 1);
+                    states.add(new State(engine));
+                    if (states.size() > capacity) states.remove(0);
+                    cursor = states.size() - 1;
+                } else if (choice < 16) {
+                    jumped = cursor > 0;
+                    assertEquals(jumped, history.undo(engine), where);
+                    if (jumped) cursor--;
+                } else if (choice < 18) {
+                    jumped = cursor < states.size() - 1;
+                    assertEquals(jumped, history.redo(engine), where);
+                    if (jumped) cursor++;
+                } else {
+                    cursor = random.nextInt(states.size());
+                    if (choice == 19) {
+                        Engine fresh = new Engine(width, height, seed, randomizer);
+                        history.jumpTo(cursor, fresh);
+                        states.get(cursor).assertRestored(fresh, where + " fresh engine");
+                    }
+                    history.jumpTo(cursor, engine);
+                }
+                assertEquals(states.size(), history.size(), where);
+                assertEquals(cursor, history.getCursor(), where);
+                if (jumped) {
+                    State state = states.get(cursor);
+                    state.assertRestored(engine, where);
+                    for (int r = 0; r < height; r++) {
+                        assertEquals(state.rows[r], history.getRowBits(cursor, r), where + " row " + r);
+                    }
+                }
+            }
+        }
+    }
+
+    // An undone placement played again deals the same pieces, even once the history holds
+    // more pieces than the queue previews
+    @Test
+    void undoThenReplayDealsTheSamePieces() {
+        Engine engine = new Engine(10, 20, 8);
+        BoardHistory history = new BoardHistory(40);
+        history.record(engine);
+        ArrayList<TetrinomeType> dealt = new ArrayList<>();
+        Bot bot = new Bot(Bot.DEFAULT_WEIGHTS, 1, Long.MAX_VALUE / 4, null);
+        while (engine.getPiecesPlaced() < 30 && !engine.isGameOver()) {
+            dealt.add(engine.getPieceType());
+            int placed = engine.getPiecesPlaced();
+            while (engine.getPiecesPlaced() == placed) engine.step(bot.nextAction(engine));
+            history.record(engine);
+        }
+        assertFalse(engine.isGameOver());
+        history.jumpTo(0, engine);
+        for (int piece = 0; piece < dealt.size(); piece++) {
+            assertEquals(dealt.get(piece), engine.getPieceType(), "piece " + piece);
+            int placed = engine.getPiecesPlaced();
+            while (engine.getPiecesPlaced() == placed) engine.step(bot.nextAction(engine));
+        }
+    }
+
+    // Recording reads only the rows changed since the last record: on a tall board a changed
+    // row costs a block, a page and the page table, and an unchanged grid nothing at all
+    @Test
+    void recordCopiesOnlyTheChangedRows() {
+        Engine engine = new Engine(10, 20000, 5);
+        BoardHistory history = new BoardHistory(8);
+        history.record(engine);
+        long[] round = new long[1];
+        long bytes = Allocations.steadyState(() -> {
+            engine.setRowBits(19999, ++round[0] & 0x1FF);
+            history.record(engine);
+        }, 2000, 100);
+        assertTrue(bytes / 100 < 4096, "bytes per record: " + bytes / 100);
+        assertEquals(0, Allocations.steadyState(() -> history.record(engine), 2000, 100));
+    }
+
+    @Test
+    void recordRejectsAnotherBoardSize() {
+        BoardHistory history = new BoardHistory(4);
+        history.record(new Engine(10, 20, 1));
+        assertThrows(IllegalArgumentException.class, () -> history.record(new Engine(10, 21, 1)));
+        assertThrows(IndexOutOfBoundsException.class, () -> history.jumpTo(1, new Engine(10, 20, 1)));
+        assertThrows(IllegalArgumentException.class, () -> new BoardHistory(0));
+    }
+}
@@ -0,0 +1,233 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class EngineTest {
+    // Rows are set directly, as many full ones as happen to come up, and cleared again and
+    // again on the same engine, so the ring is rotated as well as copied. Each clear must match
+    // removing the full rows from a plain array.
+    @Test
+    void clearsMatchAPlainGrid() {
+        SplittableRandom random = new SplittableRandom(2);
+        for (int trial = 0; trial < 500; trial++) {
+            int width = 1 + random.nextInt(64);
+            int height = 1 + random.nextInt(40);
+            long full = width == 64 ? -1L : (1L << width) - 1;
+            Engine engine = new Engine(width, height, trial);
+            long[] expected = new long[height];
+            int[] cleared = new int[height];
+            int total = 0;
+            for (int round = 0; round < 6; round++) {
+                for (int row = random.nextInt(height); row < height; row++) {
+                    long bits = random.nextInt(3) == 0 ? full : random.nextLong() & full;
+                    engine.setRowBits(row, bits);
+                    expected[row] = bits;
+                }
+
+                int[] expectedCleared = new int[height];
+                int count = clear(expected, full, expectedCleared);
+                assertEquals(count, engine.clearLines(cleared));
+                assertTrue(Arrays.equals(expectedCleared, 0, count, cleared, 0, count), "cleared rows");
+                total += count;
+                assertEquals(total, engine.getLinesCleared());
+                assertGrid(expected, engine);
+            }
+        }
+    }
+
+    // Removes the full rows of a grid in place, rows above drop, and lists them bottom first
+    private static int clear(long[] rows, long full, int[] cleared) {
+        int count = 0;
+        long[] kept = new long[rows.length];
+        int write = rows.length - 1;
+        for (int row = rows.length - 1; row >= 0; row--) {
+            if (rows[row] == full) {
+                cleared[count++] = row;
+            } else {
+                kept[write--] = rows[row];
+            }
+        }
+        System.arraycopy(kept, 0, rows, 0, rows.length);
+        return count;
+    }
+
+    private static void assertGrid(long[] expected, Engine engine) {
+        int height = expected.length;
+        for (int row = 0; row < height; row++) {
+            assertEquals(expected[row], engine.getRowBits(row), "row " + row);
+        }
+        assertEquals(Zobrist.hash(expected), engine.getHash(), "hash");
+        int top = 0;
+        while (top < height && expected[top] == 0) top++;
+        assertTrue(engine.getStackTop() <= top, "stack top below an occupied row");
+        for (int col = 0; col < engine.getWidth(); col++) {
+            int columnTop = 0;
+            while (columnTop < height && (expected[columnTop] & 1L << col) == 0) columnTop++;
+            assertEquals(height - columnTop, engine.getColumnHeight(col), "column " + col);
+        }
+    }
+
+    // The skyline answers for pieces above the stack and stepping down for pieces under an
+    // overhang, either way the distance must be the one found by testing every row
+    @Test
+    void dropDistanceMatchesSteppingDown() {
+        SplittableRandom random = new SplittableRandom(15);
+        TetrinomeType[] types = TetrinomeType.values();
+        for (int trial = 0; trial < 2000; trial++) {
+            int width = 4 + random.nextInt(61);
+            int height = 4 + random.nextInt(30);
+            Engine engine = new Engine(width, height, trial);
+            for (int row = random.nextInt(height); row < height; row++) {
+                engine.setRowBits(row, random.nextLong() & random.nextLong());
+            }
+            for (int probe = 0; probe < 20; probe++) {
+                TetrinomeType type = types[random.nextInt(types.length)];
+                int rotation = random.nextInt(TetrinomeType.ROTATIONS);
+                int col = random.nextInt(width);
+                int row = random.nextInt(height);
+                if (!engine.fits(type, rotation, col, row)) continue;
+                int expected = 0;
+                while (engine.fits(type, rotation, col, row + expected + 1)) expected++;
+                assertEquals(expected, engine.dropDistance(type, rotation, col, row));
+            }
+        }
+    }
+
+    @Test
+    void hardDropLandsOnTheGhost() {
+        Engine engine = new Engine(10, 20, 4);
+        for (int piece = 0; piece < 30 && !engine.isGameOver(); piece++) {
+            engine.step(piece % 2 == 0 ? Action.LEFT : Action.ROTATE);
+            int ghost = engine.getGhostRow();
+            TetrinomeType type = engine.getPieceType();
+            int rotation = engine.getPieceRotation();
+            int col = engine.getPieceCol();
+            long[] before = rows(engine);
+            assertTrue(engine.step(Action.HARD_DROP));
+
+            Engine expected = new Engine(10, 20, 4);
+            for (int row = 0; row < 20; row++) {
+                expected.setRowBits(row, before[row]);
+            }
+            expected.place(type, rotation, col, ghost);
+            expected.clearLines();
+            assertEquals(expected.getHash(), engine.getHash(), "piece " + piece);
+        }
+    }
+
+    private static long[] rows(Engine engine) {
+        long[] rows = new long[engine.getHeight()];
+        for (int row = 0; row < rows.length; row++) {
+            rows[row] = engine.getRowBits(row);
+        }
+        return rows;
+    }
+
+    // Garbage shifts every row up and fills the bottom with rows holed in one column, the
+    // active piece is moved up out of the way or the game ends when there is no room
+    @Test
+    void garbagePushesTheStackUp() {
+        SplittableRandom random = new SplittableRandom(9);
+        for (int trial = 0; trial < 500; trial++) {
+            int width = 4 + random.nextInt(61);
+            int height = 8 + random.nextInt(40);
+            long full = width == 64 ? -1L : (1L << width) - 1;
+            Engine engine = new Engine(width, height, trial);
+            long[] expected = new long[height];
+            for (int row = height - 1 - random.nextInt(height / 2); row < height; row++) {
+                long bits = random.nextLong() & full & ~1L; // Never full, so nothing clears
+                engine.setRowBits(row, bits);
+                expected[row] = bits;
+            }
+
+            for (int round = 0; round < 4 && !engine.isGameOver(); round++) {
+                int count = 1 + random.nextInt(4);
+                int hole = random.nextInt(width);
+                int top = 0;
+                while (top < height && expected[top] == 0) top++;
+                engine.addGarbage(count, hole);
+                if (top < count) {
+                    assertTrue(engine.isGameOver(), "stack pushed out of the top");
+                    break;
+                }
+                System.arraycopy(expected, count, expected, 0, height - count);
+                Arrays.fill(expected, height - count, height, full & ~(1L << hole));
+                if (engine.isGameOver()) break; // The piece had nowhere to go
+                assertGrid(expected, engine);
+                assertTrue(engine.fits(engine.getPieceType(), engine.getPieceRotation(), engine.getPieceCol(), engine.getPieceRow()));
+            }
+        }
+    }
+
+    @Test
+    void garbageHoleMustBeOnTheBoard() {
+        Engine engine = new Engine(10, 20, 1);
+        assertThrows(IllegalArgumentException.class, () -> engine.addGarbage(1, 10));
+    }
+
+    // The rows a lock clears are kept for scoring, bottom first
+    @Test
+    void lockReportsTheClearedRows() {
+        long seed = 0;
+        while (new Engine(10, 20, seed).getPieceType() != TetrinomeType.I) seed++;
+        Engine engine = new Engine(10, 20, seed); // An I spawns upright
+        for (int row = 16; row < 20; row++) {
+            engine.setRowBits(row, 0b1111111110);
+        }
+        engine.setRowBits(15, 0b0000011110);
+        while (engine.step(Action.LEFT)) {}
+        while (engine.step(Action.DOWN)) {} // The blocked DOWN locks it
+
+        assertEquals(4, engine.getLastClearCount());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(19 - i, engine.getLastClearedRow(i));
+        }
+        assertEquals(0b0000011110, engine.getRowBits(19));
+        for (int row = 0; row < 19; row++) {
+            assertEquals(0, engine.getRowBits(row));
+        }
+        assertEquals(Zobrist.row(19, 0b0000011110), engine.getHash());
+    }
+
+    // A lock can complete rows set up directly as well as its own, the last clear then lists
+    // more than four rows
+    @Test
+    void lockReportsEveryClearedRow() {
+        long seed = 0;
+        while (new Engine(10, 20, seed).getPieceType() != TetrinomeType.I) seed++;
+        Engine engine = new Engine(10, 20, seed); // An I spawns upright
+        for (int row = 8; row < 20; row++) {
+            engine.setRowBits(row, row < 12 ? 0b1111111110 : 0b1111111111);
+        }
+        while (engine.step(Action.LEFT)) {}
+        engine.step(Action.HARD_DROP);
+
+        assertEquals(12, engine.getLastClearCount());
+        for (int i = 0; i < 12; i++) {
+            assertEquals(19 - i, engine.getLastClearedRow(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> engine.getLastClearedRow(12));
+        for (int row = 0; row < 20; row++) {
+            assertEquals(0, engine.getRowBits(row));
+        }
+        assertEquals(0, engine.getHash());
+    }
+
+    @Test
+    void ghostRowIsMinusOneOnceTheGameIsOver() {
+        Engine engine = new Engine(10, 20, 3);
+        assertTrue(engine.getGhostRow() >= engine.getPieceRow());
+        while (!engine.isGameOver()) {
+            engine.step(Action.HARD_DROP);
+        }
+        assertEquals(-1, engine.getGhostRow());
+        assertFalse(engine.step(Action.LEFT));
+    }
+}
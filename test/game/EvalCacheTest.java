@@ -0,0 +1,77 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class EvalCacheTest {
+    @Test
+    void storedEvaluationsAreFound() {
+        EvalCache cache = new EvalCache(1024);
+        assertTrue(Double.isNaN(cache.get(42)));
+        cache.put(42, -3.5);
+        cache.put(43, 0);
+        assertEquals(-3.5, cache.get(42));
+        assertEquals(0.0, cache.get(43));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void aStoreReplacesTheEntryInItsSlot() {
+        EvalCache cache = new EvalCache(1);
+        cache.put(1, 1.0);
+        cache.put(2, 2.0);
+        assertTrue(Double.isNaN(cache.get(1)));
+        assertEquals(2.0, cache.get(2));
+    }
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(1, new EvalCache(1).getCapacity());
+        assertEquals(4096, new EvalCache(3000).getCapacity());
+        assertThrows(IllegalArgumentException.class, () -> new EvalCache(0));
+    }
+
+    // Writers and readers race on a small cache, so slots are overwritten while they are read.
+    // A read may miss, but a hit must be the value stored for that very hash.
+    @Test
+    void concurrentReadsNeverReturnAnotherHashsValue() throws InterruptedException {
+        EvalCache cache = new EvalCache(64);
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            boolean writer = t % 2 == 0;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 2_000_000 && failure.get() == null; i++) {
+                    long hash = random.nextLong(1, 4096) * 0x9E3779B97F4A7C15L;
+                    if (writer) {
+                        cache.put(hash, evaluation(hash));
+                        continue;
+                    }
+                    double value = cache.get(hash);
+                    if (!Double.isNaN(value) && value != evaluation(hash)) {
+                        failure.set("hash " + hash + " read " + value + ", stored " + evaluation(hash));
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
+    private static double evaluation(long hash) {
+        return (double) (hash >>> 11) / 7;
+    }
+}
@@ -0,0 +1,173 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class EventBusTest {
+    private static final EventBus.Kind[] KINDS = EventBus.Kind.values();
+    private static final TetrinomeType[] TYPES = TetrinomeType.values();
+
+    @Test
+    void eventsReadBackAsPublished() {
+        EventBus bus = new EventBus(16);
+        EventBus.Subscriber subscriber = bus.subscribe();
+        bus.publish(EventBus.Kind.SPAWN, TetrinomeType.T, 0, 4, 1, 0, 7);
+        bus.publish(EventBus.Kind.MOVE, TetrinomeType.I, 3, -2, 19, 0, 8);
+        bus.publish(EventBus.Kind.LINES_CLEARED, TetrinomeType.J, 1, 5000, 1_000_000, 40_000, 9);
+        bus.publish(EventBus.Kind.GAME_OVER, null, 0, -70_000, -3, 0, Long.MAX_VALUE);
+
+        assertTrue(subscriber.poll());
+        assertEquals(EventBus.Kind.SPAWN, subscriber.getKind());
+        assertEquals(TetrinomeType.T, subscriber.getType());
+        assertEquals(4, subscriber.getCol());
+        assertEquals(1, subscriber.getRow());
+        assertEquals(7, subscriber.getTick());
+
+        assertTrue(subscriber.poll());
+        assertEquals(EventBus.Kind.MOVE, subscriber.getKind());
+        assertEquals(3, subscriber.getRotation());
+        assertEquals(-2, subscriber.getCol());
+        assertEquals(19, subscriber.getRow());
+
+        // Huge boards need columns and rows far outside a 64-wide board, and counts beyond 4
+        assertTrue(subscriber.poll());
+        assertEquals(EventBus.Kind.LINES_CLEARED, subscriber.getKind());
+        assertEquals(5000, subscriber.getCol());
+        assertEquals(1_000_000, subscriber.getRow());
+        assertEquals(40_000, subscriber.getCount());
+
+        assertTrue(subscriber.poll());
+        assertEquals(EventBus.Kind.GAME_OVER, subscriber.getKind());
+        assertNull(subscriber.getType());
+        assertEquals(-70_000, subscriber.getCol());
+        assertEquals(-3, subscriber.getRow());
+        assertEquals(Long.MAX_VALUE, subscriber.getTick());
+
+        assertFalse(subscriber.poll());
+        assertEquals(0, subscriber.getDropped());
+    }
+
+    @Test
+    void subscriberStartsAtTheNextEvent() {
+        EventBus bus = new EventBus(4);
+        bus.publish(EventBus.Kind.SPAWN, TetrinomeType.O, 0, 4, 0, 0, 1);
+        EventBus.Subscriber subscriber = bus.subscribe();
+        assertFalse(subscriber.poll());
+        bus.publish(EventBus.Kind.LOCK, TetrinomeType.O, 0, 4, 18, 0, 2);
+        assertTrue(subscriber.poll());
+        assertEquals(EventBus.Kind.LOCK, subscriber.getKind());
+        assertEquals(2, bus.getPublished());
+    }
+
+    @Test
+    void lappedSubscriberSkipsToTheOldestKeptEvent() {
+        EventBus bus = new EventBus(8);
+        EventBus.Subscriber subscriber = bus.subscribe();
+        for (int i = 0; i < 20; i++) {
+            bus.publish(EventBus.Kind.MOVE, TetrinomeType.S, 0, i, 0, 0, i);
+        }
+        assertEquals(8, subscriber.getLag());
+        for (int i = 12; i < 20; i++) {
+            assertTrue(subscriber.poll());
+            assertEquals(i, subscriber.getTick());
+        }
+        assertFalse(subscriber.poll());
+        assertEquals(12, subscriber.getDropped());
+    }
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(1, new EventBus(1).getCapacity());
+        assertEquals(8, new EventBus(5).getCapacity());
+        assertEquals(1024, new EventBus(1024).getCapacity());
+        assertThrows(IllegalArgumentException.class, () -> new EventBus(0));
+    }
+
+    // One publisher and four subscribers on their own threads. Every field of an event is
+    // derived from its tick, so a torn read shows up as fields that disagree, and every event
+    // is either read or counted as dropped.
+    @ParameterizedTest
+    @ValueSource(ints = {1, 64, 65536})
+    void concurrentSubscribersNeverSeeTornEvents(int capacity) throws InterruptedException {
+        final long events = 2_000_000;
+        EventBus bus = new EventBus(capacity);
+        AtomicReference<String> failure = new AtomicReference<>();
+        long[] read = new long[4];
+        long[] dropped = new long[4];
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < read.length; t++) {
+            int index = t;
+            EventBus.Subscriber subscriber = bus.subscribe();
+            threads.add(new Thread(() -> {
+                long last = -1;
+                while (true) {
+                    if (!subscriber.poll()) {
+                        if (bus.getPublished() == events && !subscriber.poll()) break;
+                        Thread.yield(); // Lets the publisher run when there are fewer cores than threads
+                        continue;
+                    }
+                    long tick = subscriber.getTick();
+                    if (tick <= last || !matches(subscriber, tick)) {
+                        failure.compareAndSet(null, "torn or out of order event at tick " + tick + " after " + last);
+                        return;
+                    }
+                    last = tick;
+                    read[index]++;
+                }
+                dropped[index] = subscriber.getDropped();
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (long tick = 0; tick < events; tick++) {
+            int i = (int) tick;
+            bus.publish(KINDS[i % KINDS.length], type(tick), i & 3, i, ~i, i * 31, tick);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        for (int t = 0; t < read.length; t++) {
+            assertEquals(events, read[t] + dropped[t], "events read plus dropped by subscriber " + t);
+        }
+    }
+
+    private static TetrinomeType type(long tick) {
+        return tick % 8 == 7 ? null : TYPES[(int) (tick % 8) % TYPES.length];
+    }
+
+    private static boolean matches(EventBus.Subscriber subscriber, long tick) {
+        int i = (int) tick;
+        return subscriber.getKind() == KINDS[i % KINDS.length]
+                && subscriber.getType() == type(tick)
+                && subscriber.getRotation() == (i & 3)
+                && subscriber.getCol() == i
+                && subscriber.getRow() == ~i
+                && subscriber.getCount() == i * 31;
+    }
+
+    @Test
+    void publishingAndPollingAllocateNothing() {
+        EventBus bus = new EventBus(256);
+        EventBus.Subscriber subscriber = bus.subscribe();
+        long bytes = Allocations.steadyState(() -> {
+            for (int i = 0; i < 1000; i++) {
+                bus.publish(EventBus.Kind.MOVE, TetrinomeType.L, i & 3, i, i, 0, i);
+                if ((i & 7) == 0) {
+                    while (subscriber.poll()) {}
+                }
+            }
+        }, 500, 100);
+        assertEquals(0, bytes);
+    }
+}
@@ -0,0 +1,56 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class FrameRendererTest {
+    private static final Action[] ACTIONS = Action.values();
+
+    // The exported frames must look like the game on screen: Board draws the grid and the
+    // placed cells, Tetrinome the ghost and the active piece, into an image the board's size
+    @Test
+    void framesMatchBoardAndTetrinomePainting() {
+        SplittableRandom random = new SplittableRandom(19);
+        for (int game = 0; game < 20; game++) {
+            int width = 4 + random.nextInt(13);
+            int height = 4 + random.nextInt(21);
+            int cellSize = 2 + random.nextInt(20);
+            Engine engine = new Engine(width, height, random.nextLong());
+            FrameRenderer renderer = new FrameRenderer(width, height, cellSize);
+            int imageWidth = renderer.getImageWidth();
+            int imageHeight = renderer.getImageHeight();
+            Board board = new Board(engine, cellSize, imageWidth, imageHeight, null);
+            BufferedImage frame = renderer.newImage();
+            BufferedImage painted = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+
+            for (int step = 0; step < 400 && !engine.isGameOver(); step++) {
+                engine.step(ACTIONS[random.nextInt(ACTIONS.length)]);
+                if (step % 10 != 0) continue;
+
+                renderer.render(engine, frame);
+                Graphics brush = painted.getGraphics();
+                board.draw(brush);
+                if (engine.getPieceType() != null) {
+                    Tetrinome piece = new Tetrinome(engine.getPieceType(), engine.getPieceCol(), engine.getPieceRow(), board);
+                    piece.setRotationIndex(engine.getPieceRotation());
+                    piece.paintGhost(brush);
+                    piece.paint(brush);
+                }
+                brush.dispose();
+
+                for (int y = 0; y < imageHeight; y++) {
+                    for (int x = 0; x < imageWidth; x++) {
+                        if (frame.getRGB(x, y) != painted.getRGB(x, y)) {
+                            assertEquals(Integer.toHexString(painted.getRGB(x, y)), Integer.toHexString(frame.getRGB(x, y)),
+                                    width + "x" + height + " cell " + cellSize + " step " + step + " pixel " + x + "," + y);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
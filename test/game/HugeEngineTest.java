@@ -0,0 +1,220 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class HugeEngineTest {
+    private static final Action[] ACTIONS = Action.values();
+
+    // Engine and HugeEngine share their rules and differ only in the grid, so the same seed and
+    // inputs, garbage included, must give the same game and the same events on 300 board sizes
+    @Test
+    void playsExactlyLikeEngine() {
+        SplittableRandom random = new SplittableRandom(5);
+        for (int game = 0; game < 300; game++) {
+            int width = 4 + random.nextInt(61);
+            int height = 4 + random.nextInt(80);
+            long seed = random.nextLong();
+            Engine engine = new Engine(width, height, seed);
+            HugeEngine huge = new HugeEngine(width, height, seed);
+            EventBus engineEvents = new EventBus(1 << 16);
+            EventBus hugeEvents = new EventBus(1 << 16);
+            engine.setEvents(engineEvents);
+            huge.setEvents(hugeEvents);
+            EventBus.Subscriber expected = engineEvents.subscribe();
+            EventBus.Subscriber actual = hugeEvents.subscribe();
+            for (int step = 0; step < 3000 && !engine.isGameOver(); step++) {
+                String where = width + "x" + height + " step " + step;
+                int roll = random.nextInt(20);
+                if (roll == 0) {
+                    int count = 1 + random.nextInt(3);
+                    int hole = random.nextInt(width);
+                    engine.addGarbage(count, hole);
+                    huge.addGarbage(count, hole);
+                } else if (roll < 4) {
+                    engine.tick();
+                    huge.tick();
+                } else {
+                    Action action = ACTIONS[random.nextInt(ACTIONS.length)];
+                    assertEquals(engine.step(action), huge.step(action), where);
+                }
+                assertSame(engine, huge, where);
+                while (expected.poll()) {
+                    assertTrue(actual.poll(), where + " missing event");
+                    assertEquals(expected.getKind(), actual.getKind(), where);
+                    assertEquals(expected.getType(), actual.getType(), where);
+                    assertEquals(expected.getCol(), actual.getCol(), where);
+                    assertEquals(expected.getRow(), actual.getRow(), where);
+                    assertEquals(expected.getCount(), actual.getCount(), where);
+                    assertEquals(expected.getTick(), actual.getTick(), where);
+                }
+                assertFalse(actual.poll(), where + " extra event");
+            }
+            assertEquals(engine.isGameOver(), huge.isGameOver());
+        }
+    }
+
+    private static void assertSame(Engine expected, HugeEngine actual, String where) {
+        assertEquals(expected.getHash(), actual.getHash(), where);
+        assertEquals(expected.getPieceType(), actual.getPieceType(), where);
+        assertEquals(expected.getPieceRotation(), actual.getPieceRotation(), where);
+        assertEquals(expected.getPieceCol(), actual.getPieceCol(), where);
+        assertEquals(expected.getPieceRow(), actual.getPieceRow(), where);
+        assertEquals(expected.getLinesCleared(), actual.getLinesCleared(), where);
+        assertEquals(expected.getStackTop(), actual.getStackTop(), where);
+        assertEquals(expected.getLastClearCount(), actual.getLastClearCount(), where);
+        for (int i = 0; i < expected.getLastClearCount(); i++) {
+            assertEquals(expected.getLastClearedRow(i), actual.getLastClearedRow(i), where);
+        }
+        for (int row = 0; row < expected.getHeight(); row++) {
+            for (int col = 0; col < expected.getWidth(); col++) {
+                assertEquals(expected.isOccupied(row, col), actual.isOccupied(row, col), where + " cell " + row + "," + col);
+            }
+        }
+        for (int col = 0; col < expected.getWidth(); col++) {
+            assertEquals(expected.getColumnHeight(col), actual.getColumnHeight(col), where + " column " + col);
+        }
+    }
+
+    // Boards too wide for Engine: the incremental hash, skyline and full row counts must match
+    // a scan of the cells as the game goes on
+    @Test
+    void wideBoardKeepsItsSummariesExact() {
+        SplittableRandom random = new SplittableRandom(7);
+        HugeEngine engine = new HugeEngine(1000, 300, 9);
+        engine.setGravity(1);
+        for (int step = 0; step < 200_000 && !engine.isGameOver(); step++) {
+            int roll = random.nextInt(10);
+            if (roll == 0) {
+                engine.addGarbage(1 + random.nextInt(2), random.nextInt(1000));
+            } else if (roll < 5) {
+                engine.step(ACTIONS[random.nextInt(ACTIONS.length)]);
+            } else {
+                engine.tick();
+            }
+            if (step % 997 == 0) assertScan(engine.getGrid());
+        }
+        assertTrue(engine.getPiecesPlaced() > 0);
+    }
+
+    @Test
+    void wideClearDropsEveryRowAbove() {
+        ChunkedGrid grid = new ChunkedGrid(200, 150);
+        for (int row = 140; row < 150; row++) {
+            for (int col = 0; col < 200; col++) {
+                if (row % 3 != 0 || col != 7) grid.set(row, col);
+            }
+        }
+        for (int col = 0; col < 100; col++) {
+            grid.set(130 + col % 5, col * 2);
+        }
+        int[] cleared = new int[150];
+        assertEquals(7, grid.clearLines(cleared));
+        assertScan(grid);
+        for (int col = 0; col < 100; col++) {
+            assertTrue(grid.isOccupied(137 + col % 5, col * 2));
+        }
+    }
+
+    // Rows fill up in any order, some of them before garbage pushes them up, and a clear must
+    // still remove exactly the full rows, bottom first
+    @Test
+    void clearsTheRowsThatFilledUp() {
+        SplittableRandom random = new SplittableRandom(23);
+        for (int trial = 0; trial < 200; trial++) {
+            int width = 1 + random.nextInt(150);
+            int height = 8 + random.nextInt(150);
+            ChunkedGrid grid = new ChunkedGrid(width, height);
+            boolean[][] expected = new boolean[height][width];
+            for (int round = 0; round < 4; round++) {
+                for (int cell = random.nextInt(width * 8); cell > 0; cell--) {
+                    int row = height - 1 - random.nextInt(Math.min(height, 6));
+                    int col = random.nextInt(width);
+                    grid.set(row, col);
+                    expected[row][col] = true;
+                }
+                int top = 0;
+                while (top < height && !any(expected[top])) top++;
+                int count = 1 + random.nextInt(3);
+                if (width > 1 && top >= count && random.nextBoolean()) {
+                    int hole = random.nextInt(width);
+                    assertTrue(grid.addGarbage(count, hole));
+                    System.arraycopy(expected, count, expected, 0, height - count);
+                    for (int row = height - count; row < height; row++) {
+                        expected[row] = new boolean[width];
+                        Arrays.fill(expected[row], true);
+                        expected[row][hole] = false;
+                    }
+                }
+
+                int[] cleared = new int[height];
+                int clearCount = grid.clearLines(cleared);
+                int write = height - 1;
+                int expectedCount = 0;
+                boolean[][] kept = new boolean[height][];
+                for (int row = height - 1; row >= 0; row--) {
+                    if (all(expected[row])) {
+                        assertEquals(row, cleared[expectedCount++], "trial " + trial);
+                    } else {
+                        kept[write--] = expected[row];
+                    }
+                }
+                while (write >= 0) kept[write--] = new boolean[width];
+                expected = kept;
+                assertEquals(expectedCount, clearCount, "trial " + trial);
+                for (int row = 0; row < height; row++) {
+                    for (int col = 0; col < width; col++) {
+                        assertEquals(expected[row][col], grid.isOccupied(row, col), "trial " + trial);
+                    }
+                }
+                assertScan(grid);
+            }
+        }
+    }
+
+    private static boolean any(boolean[] cells) {
+        for (boolean cell : cells) {
+            if (cell) return true;
+        }
+        return false;
+    }
+
+    private static boolean all(boolean[] cells) {
+        for (boolean cell : cells) {
+            if (!cell) return false;
+        }
+        return true;
+    }
+
+    private static void assertScan(ChunkedGrid grid) {
+        long hash = 0;
+        int top = grid.getHeight();
+        for (int row = 0; row < grid.getHeight(); row++) {
+            int filled = 0;
+            for (int col = 0; col < grid.getWidth(); col++) {
+                if (!grid.isOccupied(row, col)) continue;
+                hash ^= Zobrist.key(row, col);
+                top = Math.min(top, row);
+                filled++;
+            }
+            assertEquals(filled == grid.getWidth(), grid.isRowFull(row), "row " + row);
+        }
+        assertEquals(hash, grid.getHash());
+        assertTrue(grid.getStackTop() <= top, "stack top below an occupied row");
+        for (int col = 0; col < grid.getWidth(); col++) {
+            int columnTop = grid.getHeight();
+            for (int row = 0; row < grid.getHeight(); row++) {
+                if (grid.isOccupied(row, col)) {
+                    columnTop = row;
+                    break;
+                }
+            }
+            assertEquals(columnTop, grid.getColumnTop(col), "column " + col);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class InputHandlerTest {
+    private final InputQueue queue = new InputQueue(64);
+    private final List<Action> applied = new ArrayList<>();
+    private final InputHandler handler = new InputHandler(queue, action -> applied.add(action));
+
+    @Test
+    void doubleTapWithinOneTickActsTwice() {
+        queue.offer(InputHandler.press(Action.ROTATE), 0);
+        queue.offer(InputHandler.release(Action.ROTATE), 10_000_000);
+        queue.offer(InputHandler.press(Action.ROTATE), 20_000_000);
+        handler.update();
+        assertEquals(List.of(Action.ROTATE, Action.ROTATE), applied);
+
+        // Still held from the second tap, a new press only counts after a release
+        queue.offer(InputHandler.release(Action.ROTATE), 30_000_000);
+        handler.update();
+        queue.offer(InputHandler.press(Action.ROTATE), 40_000_000);
+        handler.update();
+        assertEquals(3, applied.size());
+    }
+
+    @Test
+    void x11KeyRepeatIsIgnored() {
+        queue.offer(InputHandler.press(Action.ROTATE), 0);
+        handler.update();
+        // X11 repeats a held key as a release and a press with the same timestamp
+        queue.offer(InputHandler.release(Action.ROTATE), 50_000_000);
+        queue.offer(InputHandler.press(Action.ROTATE), 50_000_000);
+        handler.update();
+        assertEquals(List.of(Action.ROTATE), applied);
+    }
+
+    // The repeat's press can reach the queue a tick after its release, the key stays held
+    // in between and auto-shift keeps its timing. Releases are stamped a little ahead of the
+    // clock so a slow tick cannot age them past the gap.
+    @Test
+    void x11RepeatSplitAcrossTicksIsIgnored() {
+        handler.setDas(3);
+        handler.setArr(1);
+        queue.offer(InputHandler.press(Action.LEFT), 0);
+        handler.update();
+        long release = System.nanoTime() + 100_000_000;
+        queue.offer(InputHandler.release(Action.LEFT), release);
+        handler.update();
+        queue.offer(InputHandler.press(Action.LEFT), release + 1_000_000);
+        handler.update();
+        assertEquals(List.of(Action.LEFT), applied);
+        handler.update(); // DAS reached
+        assertEquals(List.of(Action.LEFT, Action.LEFT), applied);
+
+        // A release nothing follows is applied once it is older than a repeat
+        release = System.nanoTime() + 100_000_000;
+        queue.offer(InputHandler.release(Action.LEFT), release);
+        handler.update();
+        assertEquals(3, applied.size());
+        while (System.nanoTime() - release < 2_000_000) {
+            Thread.yield();
+        }
+        handler.update();
+        handler.update();
+        assertEquals(4, applied.size()); // The release lands after this tick's repeat
+    }
+
+    @Test
+    void heldDirectionAutoShiftsAfterTheDelay() {
+        handler.setDas(3);
+        handler.setArr(1);
+        queue.offer(InputHandler.press(Action.LEFT), 0);
+        handler.update(); // Pressed
+        handler.update();
+        handler.update();
+        assertEquals(1, applied.size());
+        handler.update(); // DAS reached
+        handler.update();
+        assertEquals(3, applied.size());
+        queue.offer(InputHandler.release(Action.LEFT), 0);
+        handler.update();
+        handler.update();
+        assertEquals(4, applied.size()); // The release lands after this tick's repeat
+    }
+}
@@ -0,0 +1,73 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class InputQueueTest {
+    @Test
+    void eventsComeOutInOrderWithTheirStamps() {
+        InputQueue queue = new InputQueue(8);
+        assertEquals(InputQueue.EMPTY, queue.poll());
+        for (int code = 0; code < 5; code++) {
+            assertTrue(queue.offer(code, 100 + code));
+        }
+        for (int code = 0; code < 5; code++) {
+            assertEquals(code, queue.poll());
+            assertEquals(100 + code, queue.lastStamp());
+        }
+        assertEquals(InputQueue.EMPTY, queue.poll());
+    }
+
+    @Test
+    void fullQueueDropsTheEvent() {
+        InputQueue queue = new InputQueue(5); // Rounded up to 8
+        for (int code = 0; code < 8; code++) {
+            assertTrue(queue.offer(code, 0));
+        }
+        assertFalse(queue.offer(8, 0));
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(9, 0));
+        for (int code = 1; code < 8; code++) {
+            assertEquals(code, queue.poll());
+        }
+        assertEquals(9, queue.poll());
+    }
+
+    // The AWT thread offers and the game loop polls. Nothing may be lost, repeated or reordered,
+    // and each stamp must arrive with its own code.
+    @Test
+    void producerAndConsumerThreads() throws InterruptedException {
+        final int events = 5_000_000;
+        InputQueue queue = new InputQueue(64);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread consumer = new Thread(() -> {
+            int expected = 0;
+            while (expected < events) {
+                int code = queue.poll();
+                if (code == InputQueue.EMPTY) {
+                    Thread.yield(); // The producer may need this core to make progress
+                    continue;
+                }
+                if (code != expected || queue.lastStamp() != 3L * code) {
+                    failure.set("read " + code + " stamped " + queue.lastStamp() + ", expected " + expected);
+                    return;
+                }
+                expected++;
+            }
+        });
+        consumer.start();
+        for (int code = 0; code < events; code++) {
+            while (!queue.offer(code, 3L * code)) {
+                Thread.yield();
+            }
+        }
+        consumer.join();
+        assertNull(failure.get());
+        assertEquals(InputQueue.EMPTY, queue.poll());
+    }
+}
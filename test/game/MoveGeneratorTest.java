@@ -0,0 +1,92 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class MoveGeneratorTest {
+    // Plays random placements on random board sizes. At every position, following each
+    // placement's path with Engine.step must lock the piece exactly where the placement says,
+    // and no two placements may leave the same cells occupied.
+    @Test
+    void pathsLockThePieceAtTheirPlacement() {
+        SplittableRandom random = new SplittableRandom(22);
+        MoveGenerator generator = new MoveGenerator();
+        int checked = 0;
+        for (int game = 0; game < 20; game++) {
+            int width = 4 + random.nextInt(61);
+            int height = 8 + random.nextInt(33);
+            Engine engine = new Engine(width, height, random.nextLong());
+            for (int piece = 0; piece < 150 && !engine.isGameOver(); piece++) {
+                TetrinomeType type = engine.getPieceType();
+                int count = generator.generate(engine);
+                assertTrue(count > 0, "a piece that fits where it spawned can always lock somewhere");
+                Set<Long> cells = new HashSet<>();
+                for (int p = 0; p < count; p++) {
+                    int rotation = generator.getRotation(p);
+                    int col = generator.getCol(p);
+                    int row = generator.getRow(p);
+                    assertTrue(engine.fits(type, rotation, col, row));
+                    assertFalse(engine.fits(type, rotation, col, row + 1), "placement is not resting on anything");
+                    assertTrue(cells.add(Zobrist.piece(type, rotation, col, row)), "two placements cover the same cells");
+
+                    Engine byPath = copy(engine);
+                    Action[] path = new Action[generator.getPathLength(p)];
+                    int length = generator.getPath(p, path);
+                    assertEquals(Action.HARD_DROP, path[length - 1]);
+                    for (int i = 0; i < length - 1; i++) {
+                        assertTrue(byPath.step(path[i]), "input " + i + " of the path did not move the piece");
+                    }
+                    byPath.step(Action.HARD_DROP);
+
+                    Engine direct = copy(engine);
+                    direct.place(type, rotation, col, row);
+                    direct.clearLines();
+                    for (int r = 0; r < height; r++) {
+                        assertEquals(direct.getRowBits(r), byPath.getRowBits(r), "row " + r);
+                    }
+                    checked++;
+                }
+
+                int next = random.nextInt(count);
+                Action[] path = new Action[generator.getPathLength(next)];
+                int length = generator.getPath(next, path);
+                for (int i = 0; i < length; i++) {
+                    engine.step(path[i]);
+                }
+            }
+        }
+        assertTrue(checked > 10_000, "only " + checked + " placements checked");
+    }
+
+    // Same grid and active piece, on a fresh engine
+    private static Engine copy(Engine engine) {
+        Engine copy = new Engine(engine.getWidth(), engine.getHeight(), 0);
+        long[] rows = new long[engine.getHeight()];
+        for (int row = 0; row < rows.length; row++) {
+            rows[row] = engine.getRowBits(row);
+        }
+        copy.restore(rows, engine.getPieceType(), engine.getPieceRotation(), engine.getPieceCol(), engine.getPieceRow(),
+                engine.getPiecesPlaced(), engine.getLinesCleared());
+        return copy;
+    }
+
+    @Test
+    void generatingAllocatesNothing() {
+        Engine engine = new Engine(10, 20, 5);
+        engine.setRowBits(19, 0b1111011111);
+        engine.setRowBits(18, 0b0110001110);
+        MoveGenerator generator = new MoveGenerator();
+        long bytes = Allocations.steadyState(() -> {
+            for (int i = 0; i < 100; i++) {
+                generator.generate(engine);
+            }
+        }, 300, 100);
+        assertEquals(0, bytes);
+    }
+}
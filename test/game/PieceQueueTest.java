@@ -0,0 +1,176 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class PieceQueueTest {
+    private static final TetrinomeType[] TYPES = TetrinomeType.values();
+
+    // Each bag is a shuffled set, so every aligned run of 7 (or 14) pieces holds every piece
+    // once (or twice)
+    @Test
+    void bagsDealEveryPieceOncePerBag() {
+        assertBags(RandomizerType.SEVEN_BAG, 1);
+        assertBags(RandomizerType.FOURTEEN_BAG, 2);
+    }
+
+    private static void assertBags(RandomizerType type, int copies) {
+        int bagSize = TYPES.length * copies;
+        for (long seed = 0; seed < 20; seed++) {
+            PieceQueue queue = new PieceQueue(type, seed);
+            for (int bag = 0; bag < 200; bag++) {
+                int[] counts = new int[TYPES.length];
+                for (int i = 0; i < bagSize; i++) {
+                    counts[queue.next().ordinal()]++;
+                }
+                for (TetrinomeType piece : TYPES) {
+                    assertEquals(copies, counts[piece.ordinal()], type + " seed " + seed + " bag " + bag + " " + piece);
+                }
+            }
+        }
+    }
+
+    @Test
+    void sameSeedDealsTheSameSequence() {
+        for (RandomizerType type : RandomizerType.values()) {
+            PieceQueue first = new PieceQueue(type, 42);
+            PieceQueue second = new PieceQueue(type, 42);
+            PieceQueue other = new PieceQueue(type, 43);
+            int differences = 0;
+            for (int i = 0; i < 2000; i++) {
+                TetrinomeType piece = first.next();
+                assertEquals(piece, second.next(), type + " piece " + i);
+                if (piece != other.next()) differences++;
+            }
+            assertNotEquals(0, differences, type + " ignores its seed");
+            assertEquals(type, first.getType());
+            assertEquals(42, first.getSeed());
+        }
+    }
+
+    // Previewing deals ahead without changing what is taken, however much of the ring is full
+    @Test
+    void peekMatchesTheFollowingPieces() {
+        SplittableRandom random = new SplittableRandom(6);
+        TetrinomeType[] seen = new TetrinomeType[PieceQueue.CAPACITY];
+        for (RandomizerType type : RandomizerType.values()) {
+            PieceQueue queue = new PieceQueue(type, 7);
+            PieceQueue plain = new PieceQueue(type, 7);
+            for (int round = 0; round < 500; round++) {
+                int ahead = 1 + random.nextInt(PieceQueue.CAPACITY);
+                for (int i = 0; i < ahead; i++) {
+                    seen[i] = queue.peek(i);
+                }
+                int taken = 1 + random.nextInt(ahead);
+                for (int i = 0; i < taken; i++) {
+                    TetrinomeType piece = queue.next();
+                    assertEquals(seen[i], piece, type + " round " + round + " piece " + i);
+                    assertEquals(plain.next(), piece, type + " round " + round + " piece " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void peekBeyondTheRingIsRejected() {
+        PieceQueue queue = new PieceQueue(RandomizerType.SEVEN_BAG, 1);
+        queue.peek(PieceQueue.CAPACITY - 1);
+        assertThrows(IndexOutOfBoundsException.class, () -> queue.peek(PieceQueue.CAPACITY));
+        assertThrows(IndexOutOfBoundsException.class, () -> queue.peek(-1));
+    }
+
+    @Test
+    void historyNeverStartsWithSZOrO() {
+        for (long seed = 0; seed < 1000; seed++) {
+            TetrinomeType first = new PieceQueue(RandomizerType.HISTORY, seed).next();
+            assertNotEquals(TetrinomeType.S, first);
+            assertNotEquals(TetrinomeType.Z, first);
+            assertNotEquals(TetrinomeType.O, first);
+        }
+    }
+
+    // Restoring deals the taken pieces again, so the queue continues like the original
+    @Test
+    void restoreContinuesTheSequence() {
+        for (RandomizerType type : RandomizerType.values()) {
+            PieceQueue original = new PieceQueue(type, 11);
+            for (int i = 0; i < 37; i++) {
+                original.next();
+            }
+            PieceQueue restored = new PieceQueue(RandomizerType.SEVEN_BAG, 0);
+            restored.restore(type, 11, original.getTaken());
+            for (int i = 0; i < 500; i++) {
+                assertEquals(original.next(), restored.next(), type + " piece " + i);
+            }
+        }
+    }
+
+    // Seeking back within the retained pieces reads the ring, further back deals again from
+    // the seed and past the dealt pieces deals forward, each time continuing like a plain queue
+    @Test
+    void seekContinuesFromAnyPoint() {
+        SplittableRandom random = new SplittableRandom(12);
+        for (RandomizerType type : RandomizerType.values()) {
+            TetrinomeType[] sequence = new TetrinomeType[1000];
+            PieceQueue plain = new PieceQueue(type, 5);
+            for (int i = 0; i < sequence.length; i++) {
+                sequence[i] = plain.next();
+            }
+
+            PieceQueue queue = new PieceQueue(type, 5);
+            queue.retain(40);
+            for (int round = 0; round < 300; round++) {
+                long position = queue.getTaken();
+                long target = random.nextBoolean()
+                        ? Math.max(0, position - random.nextInt(120))
+                        : Math.min(sequence.length - 100, position + random.nextInt(60));
+                queue.seek(target);
+                assertEquals(target, queue.getTaken(), type + " round " + round);
+                assertEquals(sequence[(int) target + 1], queue.peek(1), type + " round " + round);
+                for (int i = 0; i < 20; i++) {
+                    assertEquals(sequence[(int) target + i], queue.next(), type + " round " + round + " piece " + i);
+                }
+            }
+        }
+    }
+
+    // Growing the ring keeps the pieces already dealt, so seeking back to them reads the ring
+    // instead of dealing again
+    @Test
+    void retainKeepsThePiecesAlreadyDealt() {
+        PieceQueue plain = new PieceQueue(RandomizerType.SEVEN_BAG, 9);
+        PieceQueue queue = new PieceQueue(RandomizerType.SEVEN_BAG, 9);
+        TetrinomeType[] sequence = new TetrinomeType[30];
+        for (int i = 0; i < sequence.length; i++) {
+            sequence[i] = plain.next();
+            assertEquals(sequence[i], queue.next());
+        }
+        queue.retain(100);
+        queue.seek(16);
+        assertEquals(14, queue.size());
+        for (int i = 16; i < sequence.length; i++) {
+            assertEquals(sequence[i], queue.next(), "piece " + i);
+        }
+        assertEquals(plain.next(), queue.next());
+    }
+
+    @Test
+    void retainAndSeekRejectBadCounts() {
+        PieceQueue queue = new PieceQueue(RandomizerType.SEVEN_BAG, 1);
+        assertThrows(IllegalArgumentException.class, () -> queue.retain(-1));
+        assertThrows(IllegalArgumentException.class, () -> queue.retain((1 << 24) + 1));
+        assertThrows(IllegalArgumentException.class, () -> queue.seek(-1));
+    }
+
+    @Test
+    void parseAcceptsPropertyNames() {
+        assertEquals(RandomizerType.SEVEN_BAG, RandomizerType.parse("seven-bag"));
+        assertEquals(RandomizerType.FOURTEEN_BAG, RandomizerType.parse(" Fourteen_Bag "));
+        assertEquals(RandomizerType.HISTORY, RandomizerType.parse("HISTORY"));
+        assertThrows(IllegalArgumentException.class, () -> RandomizerType.parse("tgm"));
+    }
+}
@@ -0,0 +1,90 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.SplittableRandom;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+
+class PngEncoderTest {
+    // A rendered frame has a few colors and is written as a palette image
+    @Test
+    void paletteFramesReadBack() throws IOException {
+        Engine engine = new Engine(10, 20, 3);
+        SplittableRandom random = new SplittableRandom(3);
+        Action[] actions = Action.values();
+        for (int i = 0; i < 300 && !engine.isGameOver(); i++) {
+            engine.step(actions[random.nextInt(actions.length)]);
+        }
+        FrameRenderer renderer = new FrameRenderer(10, 20, 16);
+        int[] pixels = new int[renderer.getImageWidth() * renderer.getImageHeight()];
+        renderer.render(engine, pixels);
+
+        BufferedImage image = roundTrip(new PngEncoder(6), pixels, renderer.getImageWidth(), renderer.getImageHeight());
+        assertEquals(BufferedImage.TYPE_BYTE_INDEXED, image.getType());
+        assertPixels(pixels, image);
+    }
+
+    // More than 256 colors falls back to RGB, and one encoder can switch between the two
+    @Test
+    void manyColorFramesReadBackAsRgb() throws IOException {
+        SplittableRandom random = new SplittableRandom(8);
+        PngEncoder encoder = new PngEncoder(1);
+        for (int frame = 0; frame < 4; frame++) {
+            int width = 20 + random.nextInt(100);
+            int height = 20 + random.nextInt(100);
+            int colors = frame % 2 == 0 ? 257 + random.nextInt(1000) : 1 + random.nextInt(256);
+            int[] palette = new int[colors];
+            for (int i = 0; i < colors; i++) {
+                palette[i] = random.nextInt(1 << 24);
+            }
+            int[] pixels = new int[width * height];
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = palette[i < colors ? i : random.nextInt(colors)];
+            }
+
+            BufferedImage image = roundTrip(encoder, pixels, width, height);
+            int type = frame % 2 == 0 ? BufferedImage.TYPE_3BYTE_BGR : BufferedImage.TYPE_BYTE_INDEXED;
+            assertEquals(type, image.getType(), "frame " + frame);
+            assertPixels(pixels, image);
+        }
+    }
+
+    // Once the buffers have grown, writing a frame allocates nothing
+    @Test
+    void framesAllocateNothing() {
+        FrameRenderer renderer = new FrameRenderer(10, 20, 16);
+        int[] pixels = new int[renderer.getImageWidth() * renderer.getImageHeight()];
+        renderer.render(new Engine(10, 20, 5), pixels);
+        PngEncoder encoder = new PngEncoder(6);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+        long bytes = Allocations.steadyState(() -> {
+            out.reset();
+            try {
+                encoder.write(pixels, renderer.getImageWidth(), renderer.getImageHeight(), out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, 200, 50);
+        assertEquals(0, bytes);
+    }
+
+    private static BufferedImage roundTrip(PngEncoder encoder, int[] pixels, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.write(pixels, width, height, out);
+        return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static void assertPixels(int[] pixels, BufferedImage image) {
+        int width = image.getWidth();
+        assertEquals(pixels.length, width * image.getHeight());
+        for (int i = 0; i < pixels.length; i++) {
+            assertEquals(pixels[i] & 0xFFFFFF, image.getRGB(i % width, i / width) & 0xFFFFFF, "pixel " + i);
+        }
+    }
+}
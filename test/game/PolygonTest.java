@@ -0,0 +1,96 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class PolygonTest {
+    // 2,000 random star shaped polygons, each moved and turned five times, with 200
+    // queries around it after every change. Single and batch contains must agree with a plain
+    // ray cast over a fresh copy's points, so a cache that misses a move or a turn shows up here.
+    @Test
+    void containsMatchesARayCastOverThePoints() {
+        SplittableRandom random = new SplittableRandom(21);
+        Point[] queries = new Point[200];
+        boolean[] results = new boolean[queries.length];
+        int checked = 0;
+        for (int k = 0; k < 2000; k++) {
+            int n = 3 + random.nextInt(6);
+            Point[] shape = new Point[n];
+            for (int i = 0; i < n; i++) {
+                double angle = 2 * Math.PI * i / n;
+                double radius = 10 + random.nextInt(40);
+                shape[i] = new Point(50 + radius * Math.cos(angle), 50 + radius * Math.sin(angle));
+            }
+            Point position = new Point(random.nextInt(500), random.nextInt(500));
+            Polygon polygon = new Polygon(copy(shape), position, random.nextInt(360));
+            for (int m = 0; m < 5; m++) {
+                polygon.rotate(random.nextInt(90));
+                polygon.move(random.nextInt(20) - 10, random.nextInt(20) - 10);
+                // A fresh polygon at the same place has never cached anything
+                Point[] points = new Polygon(copy(shape), polygon.getPosition(), polygon.getRotation()).getPoints();
+                for (int i = 0; i < queries.length; i++) {
+                    queries[i] = new Point(position.x + random.nextInt(200) - 100, position.y + random.nextInt(200) - 100);
+                }
+
+                int inside = polygon.contains(queries, results);
+                int expectedInside = 0;
+                for (int i = 0; i < queries.length; i++) {
+                    boolean expected = rayCast(points, queries[i]);
+                    if (expected) expectedInside++;
+                    assertEquals(expected, polygon.contains(queries[i]), "query " + queries[i].x + "," + queries[i].y);
+                    assertEquals(expected, results[i], "batch query " + queries[i].x + "," + queries[i].y);
+                    checked++;
+                }
+                assertEquals(expectedInside, inside);
+            }
+        }
+        assertEquals(2_000_000, checked);
+    }
+
+    private static Point[] copy(Point[] shape) {
+        Point[] copy = new Point[shape.length];
+        for (int i = 0; i < shape.length; i++) {
+            copy[i] = shape[i].clone();
+        }
+        return copy;
+    }
+
+    // The ray cast as it stood before the points were cached
+    private static boolean rayCast(Point[] points, Point point) {
+        boolean crossingNumber = false;
+        for (int i = 0, j = 1; i < points.length; i++, j = (j + 1) % points.length) {
+            if ((((points[i].x < point.x) && (point.x <= points[j].x)) ||
+                 ((points[j].x < point.x) && (point.x <= points[i].x))) &&
+                (point.y > points[i].y + (points[j].y - points[i].y) /
+                 (points[j].x - points[i].x) * (point.x - points[i].x))) {
+                crossingNumber = !crossingNumber;
+            }
+        }
+        return crossingNumber;
+    }
+
+    @Test
+    void pointsFollowEveryMove() {
+        Point[] square = {new Point(0, 0), new Point(30, 0), new Point(30, 30), new Point(0, 30)};
+        Polygon polygon = new Polygon(square, new Point(400, 300), 0);
+        Point[] before = polygon.getPoints();
+        polygon.move(5, -2);
+        Point[] after = polygon.getPoints();
+        for (int i = 0; i < before.length; i++) {
+            assertEquals(before[i].x + 5, after[i].x, 1e-9);
+            assertEquals(before[i].y - 2, after[i].y, 1e-9);
+        }
+        after[0].x = -1; // Callers own the copies
+        assertEquals(before[0].x + 5, polygon.getPoints()[0].x, 1e-9);
+    }
+
+    @Test
+    void resultsMustHoldEveryPoint() {
+        Point[] triangle = {new Point(0, 0), new Point(10, 0), new Point(0, 10)};
+        Polygon polygon = new Polygon(triangle, new Point(0, 0), 0);
+        assertThrows(IllegalArgumentException.class, () -> polygon.contains(new Point[3], new boolean[2]));
+    }
+}
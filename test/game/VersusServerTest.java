@@ -0,0 +1,156 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+// Real clients over loopback. The server ticks once a second, so gravity, 48 ticks a row,
+// never moves a piece during a test and a client can mirror its board with a local Engine.
+@Timeout(value = 60, unit = TimeUnit.SECONDS)
+class VersusServerTest {
+    private static final int[] GARBAGE_FOR_LINES = {0, 0, 1, 2, 4};
+
+    // A blocking client that reads one frame at a time
+    private static final class Client implements AutoCloseable {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(256);
+        final ByteBuffer out = ByteBuffer.allocate(64);
+        long seed;
+        int sequence;
+
+        Client(int port) throws IOException {
+            channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            in.flip();
+        }
+
+        // Reads START and keeps the match seed
+        void start() throws IOException {
+            assertEquals(VersusProtocol.START, read());
+            seed = in.getLong();
+            assertEquals(VersusServer.WIDTH, in.get());
+            assertEquals(VersusServer.HEIGHT, in.get());
+            VersusProtocol.readVarint(in);
+            VersusProtocol.readVarint(in);
+        }
+
+        // Sends an input and returns its sequence number
+        int send(Action action) throws IOException {
+            VersusProtocol.writeInput(out, action, sequence);
+            flush();
+            return sequence++;
+        }
+
+        void sendRaw(byte... bytes) throws IOException {
+            out.put(bytes);
+            flush();
+        }
+
+        private void flush() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) channel.write(out);
+            out.clear();
+        }
+
+        // Returns the type of the next frame, the buffer positioned at its payload
+        int read() throws IOException {
+            int type;
+            while ((type = VersusProtocol.next(in)) < 0) {
+                in.compact();
+                if (channel.read(in) < 0) throw new EOFException("Server closed the connection");
+                in.flip();
+            }
+            return type;
+        }
+
+        void expectAck(int sequence) throws IOException {
+            assertEquals(VersusProtocol.ACK, read());
+            assertEquals(sequence, VersusProtocol.readVarint(in));
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static VersusServer startServer() throws IOException {
+        VersusServer server = new VersusServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1, 1);
+        server.start();
+        return server;
+    }
+
+    // The first player plays a bot until it clears two lines or more at once, the second
+    // then receives the garbage and can still play
+    @Test
+    void clearedLinesSendGarbageToTheOpponent() throws IOException {
+        try (VersusServer server = startServer();
+                Client first = new Client(server.getPort());
+                Client second = new Client(server.getPort())) {
+            first.start();
+            second.start();
+            assertEquals(first.seed, second.seed);
+            assertEquals(2, server.getSessions());
+
+            Engine mirror = new Engine(VersusServer.WIDTH, VersusServer.HEIGHT, first.seed);
+            Bot bot = new Bot(Bot.DEFAULT_WEIGHTS, 1, Long.MAX_VALUE / 4, null);
+            int cleared = 0;
+            for (int input = 0; input < 5000 && cleared < 2; input++) {
+                assertTrue(!mirror.isGameOver(), "bot lost before a multi-line clear");
+                Action action = bot.nextAction(mirror);
+                int placed = mirror.getPiecesPlaced();
+                mirror.step(action);
+                first.expectAck(first.send(action));
+                if (mirror.getPiecesPlaced() != placed) cleared = mirror.getLastClearCount();
+            }
+            assertTrue(cleared >= 2, "no multi-line clear");
+
+            assertEquals(VersusProtocol.GARBAGE, second.read());
+            assertEquals(GARBAGE_FOR_LINES[cleared], second.in.get());
+            assertEquals(new SplittableRandom(first.seed).nextInt(VersusServer.WIDTH), second.in.get());
+            second.expectAck(second.send(Action.LEFT));
+            assertEquals(2, server.getSessions());
+        }
+    }
+
+    // A frame cut short, or one with bytes past its payload, forfeits the sender's match and
+    // leaves the other match on the same loop playing
+    @Test
+    void badFrameEndsOnlyItsOwnMatch() throws IOException {
+        byte[][] badFrames = {
+            {1, VersusProtocol.INPUT},                                        // No payload
+            {4, VersusProtocol.INPUT, (byte) Action.LEFT.ordinal(), 0, 0},  // One byte too many
+        };
+        for (byte[] bad : badFrames) {
+            try (VersusServer server = startServer();
+                    Client first = new Client(server.getPort());
+                    Client second = new Client(server.getPort());
+                    Client cheat = new Client(server.getPort());
+                    Client victim = new Client(server.getPort())) {
+                for (Client client : new Client[] {first, second, cheat, victim}) {
+                    client.start();
+                }
+                first.expectAck(first.send(Action.LEFT));
+
+                cheat.sendRaw(bad);
+                assertEquals(VersusProtocol.END, cheat.read());
+                assertEquals(0, cheat.in.get());
+                assertEquals(VersusProtocol.END, victim.read());
+                assertEquals(1, victim.in.get());
+
+                first.expectAck(first.send(Action.RIGHT));
+                second.expectAck(second.send(Action.ROTATE));
+                assertEquals(2, server.getSessions());
+            }
+        }
+    }
+}